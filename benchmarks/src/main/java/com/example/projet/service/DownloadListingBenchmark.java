@@ -0,0 +1,96 @@
+package com.example.projet.service;
+
+import com.example.projet.dto.DownloadFilterDTO;
+import com.example.projet.dto.DownloadPageDTO;
+import com.example.projet.exception.DownloadException;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadPriority;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.repository.DownloadTaskRepository;
+import com.example.projet.repository.DownloadTaskRepositoryCustom.DownloadTaskSummary;
+import com.example.projet.task.Fixtures;
+import com.example.projet.task.ProgressRegistry;
+import com.example.projet.task.RequestCoalescer;
+import com.example.projet.task.WriteMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /api/downloads} without the database: one page of summaries turned into
+ * {@code DownloadProgressDTO}s, with one task in ten running so its live progress and
+ * per-segment breakdown come from the {@link ProgressRegistry}. The repository is a stub
+ * returning prebuilt rows, so only the conversion is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DownloadListingBenchmark {
+    private static final int SEGMENTS = 8;
+
+    @Param({"50", "500"})
+    int rows;
+
+    private DownloadServiceImpl service;
+    private DownloadFilterDTO filter;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        List<DownloadTaskSummary> summaries = new ArrayList<>(rows + 1);
+        ProgressRegistry progressRegistry = new ProgressRegistry(null, Fixtures.METRICS);
+        LocalDateTime now = LocalDateTime.now();
+        for (long id = 1; id <= rows + 1; id++) {
+            boolean running = id % 10 == 0;
+            long fileSize = 64L * 1024 * 1024;
+            summaries.add(new DownloadTaskSummary(id, "file-" + id + ".bin", "http://localhost/file-" + id + ".bin",
+                    "localhost", fileSize, running ? fileSize / 2 : fileSize, 0,
+                    running ? DownloadStatus.DOWNLOADING : DownloadStatus.COMPLETED, DownloadPriority.NORMAL,
+                    null, null, null, null, null, now.minusSeconds(id), running ? null : now));
+            if (running) {
+                DownloadTask task = new DownloadTask();
+                task.setId(id);
+                task.setUrl("http://localhost/file-" + id + ".bin");
+                task.setFileSize(fileSize);
+                Fixtures.register(progressRegistry, task, SEGMENTS);
+            }
+        }
+
+        DownloadTaskRepository repository = (DownloadTaskRepository) Proxy.newProxyInstance(
+                DownloadTaskRepository.class.getClassLoader(), new Class<?>[]{DownloadTaskRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findSummaries")) {
+                        return summaries;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        RequestCoalescer requestCoalescer = new RequestCoalescer(null, null, null, null, WriteMode.DIRECT);
+        service = new DownloadServiceImpl(repository, null, null, null, progressRegistry, null, null, null,
+                null, null, requestCoalescer, Fixtures.METRICS);
+
+        filter = new DownloadFilterDTO();
+        filter.setLimit(rows);
+    }
+
+    @Benchmark
+    public DownloadPageDTO listPage() throws DownloadException {
+        return service.getDownloads(filter);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadSegment;
+import com.example.projet.model.DownloadTask;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the runtime state of a running task the way {@link DownloadTaskExecutor#prepare} does,
+ * without the database or the engine. Public so benchmarks outside this package can use it.
+ */
+public final class Fixtures {
+    /** Meters for code under benchmark; nothing reads them. */
+    public static final DownloadMetrics METRICS = new DownloadMetrics(new SimpleMeterRegistry(), 50);
+
+    private Fixtures() {
+    }
+
+    /** A ranged task of {@code fileSize} bytes split into {@code segments} equal ranges. */
+    static ActiveDownload download(long id, String url, long fileSize, int segments) {
+        DownloadTask task = new DownloadTask();
+        task.setId(id);
+        task.setUrl(url);
+        task.setFileSize(fileSize);
+        task.setNumberOfThreads(segments);
+        task.setRangeSupported(true);
+        ActiveDownload download = new ActiveDownload(task, "localhost");
+        download.uri = URI.create(url);
+        download.progress = new TaskProgress(download, 0);
+        download.received = METRICS.received(download.host);
+        List<Segment> parts = new ArrayList<>(segments);
+        long chunk = fileSize / segments;
+        for (int i = 0; i < segments; i++) {
+            long start = i * chunk;
+            long end = i == segments - 1 ? fileSize - 1 : start + chunk - 1;
+            parts.add(segment(i, start, end, null));
+        }
+        download.scheduler = new SegmentScheduler(download.taskId, parts, chunk);
+        download.connections = segments;
+        return download;
+    }
+
+    static Segment segment(int index, long start, long end, SegmentChecksum checksum) {
+        DownloadSegment entity = new DownloadSegment();
+        entity.setSegmentIndex(index);
+        entity.setStartOffset(start);
+        entity.setEndOffset(end);
+        entity.setDownloadedBytes(0);
+        return new Segment(entity, checksum);
+    }
+
+    /**
+     * Registers {@code task} as running, half downloaded, so readers get its live progress with
+     * a per-segment breakdown.
+     */
+    public static void register(ProgressRegistry registry, DownloadTask task, int segments) {
+        ActiveDownload download = download(task.getId(), task.getUrl(), task.getFileSize(), segments);
+        TaskProgress progress = registry.register(download, task.getFileSize() / 2);
+        for (Segment segment : download.scheduler.segments()) {
+            segment.done.set((segment.end + 1 - segment.start) / 2);
+        }
+        download.progress = progress;
+        progress.sample(System.nanoTime());
+    }
+}
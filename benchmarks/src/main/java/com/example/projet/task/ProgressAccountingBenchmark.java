@@ -0,0 +1,130 @@
+package com.example.projet.task;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-write progress accounting with 8 workers on one task while a reader polls the total, as
+ * the progress endpoints and the flusher do. Each group pairs the workers with one reader:
+ * <ul>
+ *   <li>{@code atomic}: one shared {@link AtomicLong}, the simplest counter;</li>
+ *   <li>{@code adder}: one shared {@link LongAdder}, as {@link TaskProgress} uses;</li>
+ *   <li>{@code batched}: a thread-local count published every {@link #BATCH} bytes, cheaper
+ *       to write but up to {@code BATCH} bytes per worker behind;</li>
+ *   <li>{@code engine}: what the transfer engines actually do per write, i.e.
+ *       {@link Segment#advance} on the worker's own segment plus {@link TaskProgress#add}.</li>
+ * </ul>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressAccountingBenchmark {
+    private static final int WRITE = 8192;
+    private static final long BATCH = 1024 * 1024;
+    private static final int WORKERS = 8;
+
+    private final AtomicLong atomic = new AtomicLong();
+    private final LongAdder adder = new LongAdder();
+    private final AtomicLong published = new AtomicLong();
+
+    private final AtomicInteger nextSegment = new AtomicInteger();
+    private ActiveDownload download;
+
+    @Setup(Level.Iteration)
+    public void prepare() {
+        download = Fixtures.download(1L, "http://localhost/progress.bin", Long.MAX_VALUE / 2, WORKERS);
+        nextSegment.set(0);
+    }
+
+    /** What one worker owns: its pending batch and the segment it writes. */
+    @State(Scope.Thread)
+    public static class Worker {
+        long pending;
+        Segment segment;
+        /** Positioned past its content, as a write leaves it. */
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE).position(WRITE);
+
+        @Setup(Level.Iteration)
+        public void take(ProgressAccountingBenchmark task) {
+            pending = 0;
+            segment = task.download.scheduler.segments().get(task.nextSegment.getAndIncrement() % WORKERS);
+        }
+    }
+
+    @Benchmark
+    @Group("atomic")
+    @GroupThreads(WORKERS)
+    public long atomicWrite() {
+        return atomic.addAndGet(WRITE);
+    }
+
+    @Benchmark
+    @Group("atomic")
+    public long atomicRead() {
+        return atomic.get();
+    }
+
+    @Benchmark
+    @Group("adder")
+    @GroupThreads(WORKERS)
+    public void adderWrite() {
+        adder.add(WRITE);
+    }
+
+    @Benchmark
+    @Group("adder")
+    public long adderRead() {
+        return adder.sum();
+    }
+
+    @Benchmark
+    @Group("batched")
+    @GroupThreads(WORKERS)
+    public void batchedWrite(Worker worker) {
+        worker.pending += WRITE;
+        if (worker.pending >= BATCH) {
+            published.addAndGet(worker.pending);
+            worker.pending = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("batched")
+    public long batchedRead() {
+        return published.get();
+    }
+
+    @Benchmark
+    @Group("engine")
+    @GroupThreads(WORKERS)
+    public void engineWrite(Worker worker) {
+        worker.segment.advance(worker.buffer, WRITE);
+        download.progress.add(WRITE);
+    }
+
+    @Benchmark
+    @Group("engine")
+    public long engineRead() {
+        return download.progress.getDownloadedBytes();
+    }
+}
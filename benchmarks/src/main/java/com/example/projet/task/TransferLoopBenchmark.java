@@ -0,0 +1,98 @@
+package com.example.projet.task;
+
+import com.example.projet.support.TestOriginServer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read/write loop of each {@link TransferEngine}: one segment fetched from a loopback
+ * origin and written positionally into a preallocated file, for several buffer sizes
+ * ({@code download.blocking.buffer-size} or {@code download.async.buffer-size}), with and
+ * without the running CRC32C. The origin runs in the same JVM, so absolute numbers include its
+ * cost; compare runs, not values. Add {@code -prof gc} or an OS profiler to compare the CPU the
+ * two engines spend per byte.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferLoopBenchmark {
+    private static final int SIZE = 32 * 1024 * 1024;
+
+    @Param({"BLOCKING", "ASYNC"})
+    String transferEngine;
+
+    @Param({"8192", "65536", "262144"})
+    int bufferSize;
+
+    @Param({"false", "true"})
+    boolean verify;
+
+    private TestOriginServer origin;
+    private CloseableHttpClient httpClient;
+    private CloseableHttpAsyncClient httpAsyncClient;
+    private TransferEngine engine;
+    private Path target;
+    private FileChannel channel;
+
+    private ActiveDownload download;
+    private Segment segment;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        origin = TestOriginServer.start(SIZE);
+        httpClient = HttpClients.createDefault();
+        httpAsyncClient = HttpAsyncClients.createDefault();
+        httpAsyncClient.start();
+        BandwidthLimiter unlimited = new BandwidthLimiter(new ProgressRegistry(null, Fixtures.METRICS), 0);
+        engine = "ASYNC".equals(transferEngine)
+                ? new AsyncTransferEngine(httpAsyncClient, unlimited, Fixtures.METRICS, bufferSize, SIZE, 1)
+                : new BlockingTransferEngine(httpClient, unlimited, Fixtures.METRICS, bufferSize);
+        target = Files.createTempFile("transfer-loop", ".bin");
+        channel = DownloadFiles.openTarget(target, SIZE);
+    }
+
+    @Setup(Level.Invocation)
+    public void freshSegment() {
+        download = Fixtures.download(1L, origin.url("loop.bin"), SIZE, 1);
+        segment = Fixtures.segment(0, 0, SIZE - 1, verify ? new SegmentChecksum() : null);
+    }
+
+    @Benchmark
+    public long transfer() throws IOException {
+        engine.transfer(download, channel, 0, segment);
+        return segment.done.get();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        channel.close();
+        Files.deleteIfExists(target);
+        httpClient.close();
+        httpAsyncClient.close();
+        origin.close();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.projet.task;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The two write modes on an in-memory payload: PARTS (one file per segment, then
+ * {@link DownloadFiles#mergeParts}) against DIRECT (positional writes into one preallocated
+ * file). {@link #merge} isolates the merge step on parts written once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WritePathBenchmark {
+    private static final int BUFFER_SIZE = 8192;
+
+    @Param({"64"})
+    int sizeMb;
+
+    @Param({"8"})
+    int segments;
+
+    private byte[] payload;
+    private Path dir;
+    private Path tempDir;
+    private List<Integer> parts;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        payload = new byte[sizeMb * 1024 * 1024];
+        new Random(42).nextBytes(payload);
+        dir = Files.createTempDirectory("write-path");
+        tempDir = Files.createDirectories(dir.resolve("temp"));
+        parts = IntStream.range(0, segments).boxed().toList();
+        writeParts("merge.bin");
+    }
+
+    @Setup(Level.Invocation)
+    public void clearOutputs() throws IOException {
+        Files.deleteIfExists(dir.resolve("merge.bin"));
+        Files.deleteIfExists(dir.resolve("parts.bin"));
+        Files.deleteIfExists(dir.resolve("direct.bin"));
+    }
+
+    @Benchmark
+    public void merge() throws IOException {
+        DownloadFiles.mergeParts(tempDir, dir.resolve("merge.bin").toString(), "merge.bin", parts);
+    }
+
+    @Benchmark
+    public void partsThenMerge() throws IOException {
+        writeParts("parts.bin");
+        DownloadFiles.mergeParts(tempDir, dir.resolve("parts.bin").toString(), "parts.bin", parts);
+        DownloadFiles.cleanupTempFiles(tempDir, "parts.bin", parts);
+    }
+
+    @Benchmark
+    public void direct() throws IOException {
+        try (FileChannel target = DownloadFiles.openTarget(dir.resolve("direct.bin"), payload.length)) {
+            for (int i = 0; i < segments; i++) {
+                long[] range = range(i);
+                copy(range, target, range[0]);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void writeParts(String fileName) throws IOException {
+        for (int i = 0; i < segments; i++) {
+            try (FileChannel part = FileChannel.open(DownloadFiles.partPath(tempDir, fileName, i),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                copy(range(i), part, 0);
+            }
+        }
+    }
+
+    private long[] range(int index) {
+        long chunkSize = payload.length / segments;
+        long start = index * chunkSize;
+        long end = (index == segments - 1) ? payload.length - 1 : start + chunkSize - 1;
+        return new long[]{start, end};
+    }
+
+    // Same 8 KB positional writes as the transfer engines
+    private void copy(long[] range, FileChannel channel, long basePosition) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long written = 0;
+        for (long offset = range[0]; offset <= range[1]; offset += BUFFER_SIZE) {
+            int length = (int) Math.min(BUFFER_SIZE, range[1] + 1 - offset);
+            buffer.limit((int) offset + length).position((int) offset);
+            written += DownloadFiles.writeFully(channel, buffer, basePosition + written);
+        }
+    }
+}
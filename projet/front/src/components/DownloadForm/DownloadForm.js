@@ -6,6 +6,8 @@ function DownloadForm({ onNewDownload }) {
     const [url, setUrl] = useState('');
     const [fileName, setFileName] = useState('');
     const [threads, setThreads] = useState(4);
+    const [priority, setPriority] = useState('NORMAL');
+    const [adaptive, setAdaptive] = useState(false);
     const [isLoading, setIsLoading] = useState(false);
     const [error, setError] = useState('');
 
@@ -23,7 +25,9 @@ function DownloadForm({ onNewDownload }) {
             const downloadData = {
                 url,
                 fileName: fileName || undefined,
-                numberOfThreads: threads
+                numberOfThreads: threads,
+                priority,
+                adaptiveConnections: adaptive
             };
 
             const newDownload = await startDownload(downloadData);
@@ -32,6 +36,8 @@ function DownloadForm({ onNewDownload }) {
             setUrl('');
             setFileName('');
             setThreads(4);
+            setPriority('NORMAL');
+            setAdaptive(false);
         } catch (err) {
             setError(err.message);
         } finally {
@@ -77,6 +83,29 @@ function DownloadForm({ onNewDownload }) {
                         ))}
                     </select>
                 </div>
+                <div className="form-group">
+                    <label htmlFor="priority">Priority:</label>
+                    <select
+                        id="priority"
+                        value={priority}
+                        onChange={(e) => setPriority(e.target.value)}
+                    >
+                        {['LOW', 'NORMAL', 'HIGH', 'URGENT'].map(level => (
+                            <option key={level} value={level}>{level}</option>
+                        ))}
+                    </select>
+                </div>
+                <div className="form-group">
+                    <label htmlFor="adaptive">
+                        <input
+                            type="checkbox"
+                            id="adaptive"
+                            checked={adaptive}
+                            onChange={(e) => setAdaptive(e.target.checked)}
+                        />
+                        Adjust connections automatically
+                    </label>
+                </div>
                 <button type="submit" disabled={isLoading}>
                     {isLoading ? 'Starting...' : 'Start Download'}
                 </button>
@@ -99,7 +99,7 @@ function DownloadItem({ download, onUpdate, onRemove }) {
             {download.status}
           </span>
                     <span className="download-size">
-            {formatBytes(download.downloadedBytes)} of {formatBytes(download.fileSize)}
+            {formatBytes(download.downloadedBytes)} of {download.fileSize >= 0 ? formatBytes(download.fileSize) : 'unknown size'}
           </span>
                     {download.downloadSpeed > 0 && (
                         <span className="download-speed">
@@ -114,6 +114,9 @@ function DownloadItem({ download, onUpdate, onRemove }) {
                     progress={download.progress || 0}
                     status={download.status}
                 />
+                {download.integrityError && (
+                    <div className="download-error">{download.integrityError}</div>
+                )}
             </div>
             <div className="download-actions">
                 {download.status === 'DOWNLOADING' && (
@@ -125,7 +128,7 @@ function DownloadItem({ download, onUpdate, onRemove }) {
                         Pause
                     </button>
                 )}
-                {download.status === 'PAUSED' && (
+                {(download.status === 'PAUSED' || download.status === 'FAILED') && (
                     <button
                         onClick={handleResume}
                         disabled={isBusy}
@@ -1,6 +1,6 @@
 import React, { useEffect, useState } from 'react';
 import DownloadItem from '../DownloadItem/DownloadItem';
-import { getDownloads, pollDownloadProgress } from '../../services/downloadService';
+import { getDownloads, subscribeToProgress } from '../../services/downloadService';
 import './DownloadList.css';
 
 function DownloadList({ downloads, onUpdateDownload, onRemoveDownload }) {
@@ -26,18 +26,13 @@ function DownloadList({ downloads, onUpdateDownload, onRemoveDownload }) {
     }, []);
 
     useEffect(() => {
-        const activeDownloads = downloads.filter(
-            d => d.status === 'DOWNLOADING' || d.status === 'QUEUED'
-        );
-
-        activeDownloads.forEach(download => {
-            pollDownloadProgress(download.id).then(updatedDownload => {
-                if (updatedDownload) {
-                    onUpdateDownload(download.id, updatedDownload);
-                }
-            });
+        // The server pushes only what changed, so no polling is needed
+        return subscribeToProgress({
+            onProgress: delta => onUpdateDownload(delta.id, delta),
+            onStatus: download => onUpdateDownload(download.id, download),
+            onRemoved: id => onRemoveDownload(id)
         });
-    }, [downloads]);
+    }, []);
 
     const handleRemove = (id) => {
         onRemoveDownload(id);
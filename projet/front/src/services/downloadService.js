@@ -11,10 +11,11 @@ export const startDownload = async (downloadData) => {
     }
 };
 
-export const getDownloads = async () => {
+// First page of the listing (newest first); pass the returned nextCursor to get the next one
+export const getDownloads = async (params = {}) => {
     try {
-        const response = await axios.get(API_URL);
-        return response.data;
+        const response = await axios.get(API_URL, { params });
+        return response.data.items;
     } catch (error) {
         throw new Error('Failed to fetch downloads');
     }
@@ -61,6 +62,23 @@ export const deleteDownload = async (id) => {
     }
 };
 
+// Server-Sent Events: progress deltas, status changes and removals pushed by the server.
+// Pass a task id to follow a single download. Returns a function that closes the stream.
+export const subscribeToProgress = ({ onSnapshot, onProgress, onStatus, onRemoved }, taskId) => {
+    const url = taskId != null ? `${API_URL}/stream?taskId=${taskId}` : `${API_URL}/stream`;
+    const source = new EventSource(url);
+    const listen = (name, handler) => {
+        if (handler) {
+            source.addEventListener(name, (event) => handler(JSON.parse(event.data)));
+        }
+    };
+    listen('snapshot', onSnapshot);
+    listen('progress', onProgress);
+    listen('status', onStatus);
+    listen('removed', onRemoved);
+    return () => source.close();
+};
+
 // Polling function to update download progress
 export const pollDownloadProgress = async (id, interval = 1000) => {
     return new Promise((resolve) => {
@@ -6,10 +6,7 @@ import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.context.annotation.Bean;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
-import java.util.concurrent.Executor;
 
 @SpringBootApplication
 @EnableAsync
@@ -25,17 +22,6 @@ public class ProjetApplication extends SpringBootServletInitializer {
     protected SpringApplicationBuilder configure(SpringApplicationBuilder builder) {
         return builder.sources(ProjetApplication.class);
     }
-
-    @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5); // Nombre de threads minimum
-        executor.setMaxPoolSize(10); // Nombre maximum de threads
-        executor.setQueueCapacity(100); // Capacité de la file d'attente
-        executor.setThreadNamePrefix("DownloadThread-"); // Préfixe pour les noms de threads
-        executor.initialize();
-        return executor;
-    }
 }
 
 // https://downloads.apache.org/maven/maven-3/3.9.6/binaries/apache-maven-3.9.6-bin.zip
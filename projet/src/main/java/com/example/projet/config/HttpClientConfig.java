@@ -1,51 +1,205 @@
 package com.example.projet.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
 import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
 import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
 import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.core5.http.config.Registry;
 import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Pooled HTTP client used for every HEAD probe, range GET and retry, so TCP and TLS connections
+ * are reused across segments and tasks. The pool is sized from the download engine's
+ * connection caps and its statistics are published as {@code httpclient.pool.*} gauges. New
+ * connections of the classic client are timed as {@code download.connect} (TCP, tagged by
+ * scheme) and {@code download.tls.handshake}. The async client backs the non-blocking
+ * transfer engine.
+ */
 @Configuration
 public class HttpClientConfig {
 
-    @Bean
-    public CloseableHttpClient httpClient() throws NoSuchAlgorithmException, KeyManagementException {
-        SSLContext sslContext = SSLContext.getInstance("SSL");
-        sslContext.init(null, new TrustManager[]{new X509TrustManager() {
-            public void checkClientTrusted(X509Certificate[] xcs, String string) {}
-            public void checkServerTrusted(X509Certificate[] xcs, String string) {}
-            public X509Certificate[] getAcceptedIssuers() { return null; }
-        }}, new java.security.SecureRandom());
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager(
+            SSLContext sslContext,
+            MeterRegistry meterRegistry,
+            @Value("${download.connections.max-total:64}") int maxTotal,
+            @Value("${download.connections.max-per-host:16}") int maxPerHost) {
+        Timer httpConnect = connectTimer(meterRegistry, "http");
+        Timer httpsConnect = connectTimer(meterRegistry, "https");
+        Timer handshake = Timer.builder("download.tls.handshake")
+                .description("TLS handshake of a new connection")
+                .register(meterRegistry);
 
         SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(
-                sslContext, NoopHostnameVerifier.INSTANCE);
+                sslContext, NoopHostnameVerifier.INSTANCE) {
+            @Override
+            public Socket createSocket(HttpContext context) {
+                return new TimedSocket(httpsConnect);
+            }
+
+            @Override
+            public Socket createLayeredSocket(Socket socket, String target, int port, Object attachment,
+                                              HttpContext context) throws IOException {
+                long began = System.nanoTime();
+                Socket layered = super.createLayeredSocket(socket, target, port, attachment, context);
+                handshake.record(System.nanoTime() - began, TimeUnit.NANOSECONDS);
+                return layered;
+            }
+        };
+        PlainConnectionSocketFactory plainSocketFactory = new PlainConnectionSocketFactory() {
+            @Override
+            public Socket createSocket(HttpContext context) {
+                return new TimedSocket(httpConnect);
+            }
+        };
 
         Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
                 .register("https", sslSocketFactory)
-                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("http", plainSocketFactory)
                 .build();
 
         PoolingHttpClientConnectionManager connectionManager =
                 new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-        connectionManager.setMaxTotal(100);
-        connectionManager.setDefaultMaxPerRoute(20);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerHost);
+        connectionManager.setDefaultConnectionConfig(connectionConfig());
+        return connectionManager;
+    }
 
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager) {
         return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(requestConfig())
+                .setUserAgent("Mozilla/5.0")
+                .evictIdleConnections(TimeValue.ofMinutes(1))
+                .build();
+    }
+
+    /**
+     * Async client for {@code download.transfer-engine=ASYNC}. Range bodies are handled on
+     * {@code download.async.io-threads} reactor threads (default: one per core). HTTP/1.1 is
+     * forced so every segment keeps its own connection, as the engine's connection caps assume.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "download.transfer-engine", havingValue = "ASYNC")
+    public CloseableHttpAsyncClient httpAsyncClient(
+            SSLContext sslContext,
+            @Value("${download.connections.max-total:64}") int maxTotal,
+            @Value("${download.connections.max-per-host:16}") int maxPerHost,
+            @Value("${download.async.io-threads:0}") int ioThreads) {
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setTlsStrategy(ClientTlsStrategyBuilder.create()
+                        .setSslContext(sslContext)
+                        .setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                        .build())
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerHost)
+                .setDefaultConnectionConfig(connectionConfig())
+                .setDefaultTlsConfig(TlsConfig.custom()
+                        .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_1)
+                        .build())
+                .build();
+
+        IOReactorConfig.Builder reactorConfig = IOReactorConfig.custom()
+                .setSoTimeout(Timeout.ofSeconds(30));
+        if (ioThreads > 0) {
+            reactorConfig.setIoThreadCount(ioThreads);
+        }
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
                 .setConnectionManager(connectionManager)
+                .setIOReactorConfig(reactorConfig.build())
+                .setDefaultRequestConfig(requestConfig())
+                .setUserAgent("Mozilla/5.0")
+                .evictIdleConnections(TimeValue.ofMinutes(1))
+                .build();
+        client.start();
+        return client;
+    }
+
+    private static Timer connectTimer(MeterRegistry meterRegistry, String scheme) {
+        return Timer.builder("download.connect").tag("scheme", scheme)
+                .description("TCP connect of a new connection, DNS lookup excluded")
+                .register(meterRegistry);
+    }
+
+    /** Socket that records how long {@link #connect(SocketAddress, int)} took. */
+    private static final class TimedSocket extends Socket {
+        private final Timer timer;
+
+        TimedSocket(Timer timer) {
+            this.timer = timer;
+        }
+
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            long began = System.nanoTime();
+            super.connect(endpoint, timeout);
+            timer.record(System.nanoTime() - began, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static ConnectionConfig connectionConfig() {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofSeconds(30))
+                .setSocketTimeout(Timeout.ofSeconds(30))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
                 .build();
     }
+
+    private static RequestConfig requestConfig() {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofSeconds(30))
+                .setResponseTimeout(Timeout.ofSeconds(30))
+                .build();
+    }
+
+    @Bean
+    public MeterBinder httpClientPoolMetrics(PoolingHttpClientConnectionManager httpConnectionManager) {
+        return registry -> {
+            Gauge.builder("httpclient.pool.leased", httpConnectionManager, m -> m.getTotalStats().getLeased())
+                    .description("Connections currently leased to a request")
+                    .register(registry);
+            Gauge.builder("httpclient.pool.available", httpConnectionManager, m -> m.getTotalStats().getAvailable())
+                    .description("Idle connections kept alive for reuse")
+                    .register(registry);
+            Gauge.builder("httpclient.pool.pending", httpConnectionManager, m -> m.getTotalStats().getPending())
+                    .description("Requests waiting for a connection")
+                    .register(registry);
+            Gauge.builder("httpclient.pool.max", httpConnectionManager, m -> m.getTotalStats().getMax())
+                    .description("Maximum number of pooled connections")
+                    .register(registry);
+        };
+    }
 }
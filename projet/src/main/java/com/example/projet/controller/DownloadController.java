@@ -1,22 +1,31 @@
 package com.example.projet.controller;
 
+import com.example.projet.dto.BandwidthLimitDTO;
+import com.example.projet.dto.BandwidthSettingsDTO;
+import com.example.projet.dto.BatchDownloadRequestDTO;
+import com.example.projet.dto.BatchProgressDTO;
+import com.example.projet.dto.BatchSubmissionDTO;
+import com.example.projet.dto.DownloadFilterDTO;
+import com.example.projet.dto.DownloadPageDTO;
 import com.example.projet.dto.DownloadProgressDTO;
 import com.example.projet.dto.DownloadRequestDTO;
 import com.example.projet.exception.DownloadException;
 import com.example.projet.model.DownloadTask;
 import com.example.projet.service.DownloadService;
+import com.example.projet.service.ProgressStreamService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/downloads")
 @RequiredArgsConstructor
 public class DownloadController {
     private final DownloadService downloadService;
+    private final ProgressStreamService progressStreamService;
 
     @PostMapping
     public ResponseEntity<DownloadTask> startDownload(@Valid @RequestBody DownloadRequestDTO request)
@@ -24,9 +33,35 @@ public class DownloadController {
         return ResponseEntity.ok(downloadService.startDownload(request));
     }
 
+    /**
+     * Submits up to 10000 downloads at once. URLs are probed concurrently; the response lists the
+     * batch id and the entries that were rejected.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchSubmissionDTO> submitBatch(@Valid @RequestBody BatchDownloadRequestDTO request)
+            throws DownloadException {
+        return ResponseEntity.ok(downloadService.submitBatch(request));
+    }
+
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<BatchProgressDTO> getBatchProgress(@PathVariable Long batchId) throws DownloadException {
+        return ResponseEntity.ok(downloadService.getBatchProgress(batchId));
+    }
+
+    /**
+     * Keyset-paginated listing, newest first by default. Filters: {@code status} (repeatable),
+     * {@code host}, {@code createdFrom}/{@code createdTo} (ISO date-time), {@code order=asc|desc};
+     * pass the returned {@code nextCursor} as {@code cursor} for the next page.
+     */
     @GetMapping
-    public ResponseEntity<List<DownloadProgressDTO>> getAllDownloads() {
-        return ResponseEntity.ok(downloadService.getAllDownloads());
+    public ResponseEntity<DownloadPageDTO> getDownloads(DownloadFilterDTO filter) throws DownloadException {
+        return ResponseEntity.ok(downloadService.getDownloads(filter));
+    }
+
+    /** Pushes progress deltas and status changes for one task ({@code ?taskId=}) or for all. */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamProgress(@RequestParam(required = false) Long taskId) throws DownloadException {
+        return progressStreamService.subscribe(taskId);
     }
 
     @GetMapping("/{id}")
@@ -52,6 +87,31 @@ public class DownloadController {
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/bandwidth")
+    public ResponseEntity<BandwidthSettingsDTO> getBandwidthSettings() {
+        return ResponseEntity.ok(downloadService.getBandwidthSettings());
+    }
+
+    @PutMapping("/bandwidth/global")
+    public ResponseEntity<Void> setGlobalBandwidth(@Valid @RequestBody BandwidthLimitDTO limit) {
+        downloadService.setGlobalBandwidth(limit.getBytesPerSecond());
+        return ResponseEntity.ok().build();
+    }
+
+    @PutMapping("/bandwidth/hosts/{host}")
+    public ResponseEntity<Void> setHostBandwidth(@PathVariable String host,
+                                                 @Valid @RequestBody BandwidthLimitDTO limit) {
+        downloadService.setHostBandwidth(host, limit.getBytesPerSecond());
+        return ResponseEntity.ok().build();
+    }
+
+    @PutMapping("/{id}/bandwidth")
+    public ResponseEntity<Void> setTaskBandwidth(@PathVariable Long id, @Valid @RequestBody BandwidthLimitDTO limit)
+            throws DownloadException {
+        downloadService.setTaskBandwidth(id, limit.getBytesPerSecond());
+        return ResponseEntity.ok().build();
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteDownload(@PathVariable Long id) throws DownloadException {
         downloadService.deleteDownload(id);
@@ -0,0 +1,15 @@
+package com.example.projet.dto;
+
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BandwidthLimitDTO {
+    /** 0 removes the limit. */
+    @PositiveOrZero(message = "Limit must be zero (unlimited) or positive")
+    private long bytesPerSecond;
+}
@@ -0,0 +1,16 @@
+package com.example.projet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BandwidthSettingsDTO {
+    private long globalBytesPerSecond;
+    private Map<String, Long> hosts;
+    private Map<Long, Long> tasks;
+}
@@ -0,0 +1,15 @@
+package com.example.projet.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchDownloadRequestDTO {
+    @NotEmpty(message = "At least one download is required")
+    @Size(max = 10000, message = "A batch holds at most 10000 downloads")
+    private List<@Valid DownloadRequestDTO> downloads;
+}
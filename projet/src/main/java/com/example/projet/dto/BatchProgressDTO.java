@@ -0,0 +1,21 @@
+package com.example.projet.dto;
+
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+public class BatchProgressDTO {
+    private Long batchId;
+    private LocalDateTime createdAt;
+    private int submitted;
+    private int accepted;
+    private Map<DownloadStatus, Long> tasksByStatus;
+    private long fileSize;
+    private long downloadedBytes;
+    private double progress;
+    /** True once no task of the batch is QUEUED or DOWNLOADING. */
+    private boolean finished;
+}
@@ -0,0 +1,15 @@
+package com.example.projet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRejectionDTO {
+    /** Position of the entry in the submitted list. */
+    private int index;
+    private String url;
+    private String reason;
+}
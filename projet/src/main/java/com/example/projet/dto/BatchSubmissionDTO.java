@@ -0,0 +1,17 @@
+package com.example.projet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSubmissionDTO {
+    private Long batchId;
+    private int submitted;
+    private int accepted;
+    private List<BatchRejectionDTO> rejected;
+}
@@ -0,0 +1,15 @@
+package com.example.projet.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ConnectionChangeDTO {
+    private LocalDateTime at;
+    private int fromConnections;
+    private int toConnections;
+    /** Task throughput in bytes/s when the decision was taken. */
+    private double speed;
+    private String reason;
+}
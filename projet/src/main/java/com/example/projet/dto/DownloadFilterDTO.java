@@ -0,0 +1,29 @@
+package com.example.projet.dto;
+
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Query parameters of {@code GET /api/downloads}. All filters are optional; {@code cursor} is the
+ * {@code nextCursor} of the previous page.
+ */
+@Data
+public class DownloadFilterDTO {
+    private List<DownloadStatus> status;
+    private String host;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+
+    /** {@code desc} (newest first, default) or {@code asc}, on the creation time. */
+    private String order = "desc";
+    private String cursor;
+    private int limit = 50;
+}
@@ -0,0 +1,16 @@
+package com.example.projet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DownloadPageDTO {
+    private List<DownloadProgressDTO> items;
+    /** Cursor of the next page, or {@code null} on the last one. */
+    private String nextCursor;
+}
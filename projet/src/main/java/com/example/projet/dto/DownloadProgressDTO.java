@@ -2,21 +2,39 @@ package com.example.projet.dto;
 
 
 
+import com.example.projet.model.DownloadTask.ChecksumAlgorithm;
+import com.example.projet.model.DownloadTask.DownloadPriority;
 import com.example.projet.model.DownloadTask.DownloadStatus;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 public class DownloadProgressDTO {
     private Long id;
     private String fileName;
     private String url;
+    private String host;
     private long fileSize;
     private long downloadedBytes;
     private double progress;
     private double downloadSpeed;
+    private double averageSpeed;
+    private double peakSpeed;
+    private Long etaSeconds;
+    private int activeConnections;
+    private boolean adaptiveConnections;
+    private int connectionLimit;
+    private List<ConnectionChangeDTO> connectionHistory;
+    private List<SegmentProgressDTO> segments;
     private DownloadStatus status;
+    private DownloadPriority priority;
+    private ChecksumAlgorithm checksumAlgorithm;
+    private String expectedChecksum;
+    private String actualChecksum;
+    private Boolean checksumVerified;
+    private String integrityError;
     private LocalDateTime createdAt;
     private LocalDateTime completedAt;
 }
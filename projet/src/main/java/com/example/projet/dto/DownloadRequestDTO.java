@@ -1,11 +1,17 @@
 package com.example.projet.dto;
 
+import com.example.projet.model.DownloadTask.ChecksumAlgorithm;
+import com.example.projet.model.DownloadTask.DownloadPriority;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -13,9 +19,34 @@ public class DownloadRequestDTO {
     @NotBlank(message = "URL is required")
     private String url;
 
+    /**
+     * Other URLs serving the same file. Each must report the same size and, unless
+     * {@code expectedChecksum} is given, the same ETag as {@code url}.
+     */
+    @Size(max = 16, message = "At most 16 mirrors")
+    private List<String> mirrors;
+
     @NotBlank(message = "File name is required")
     private String fileName;
 
     @Positive(message = "Number of threads must be positive")
     private int numberOfThreads = 4;
+
+    private DownloadPriority priority = DownloadPriority.NORMAL;
+
+    /** Start with {@code numberOfThreads} connections and let the engine find the best count. */
+    private boolean adaptiveConnections;
+
+    /** Expected digest of the whole file, in hex; verified while the file downloads. */
+    @Pattern(regexp = "^[0-9a-fA-F]*$", message = "Expected checksum must be hexadecimal")
+    private String expectedChecksum;
+
+    /** Algorithm of {@code expectedChecksum}; inferred from its length when omitted. */
+    private ChecksumAlgorithm checksumAlgorithm;
+
+    public DownloadRequestDTO(String url, String fileName, int numberOfThreads) {
+        this.url = url;
+        this.fileName = fileName;
+        this.numberOfThreads = numberOfThreads;
+    }
 }
\ No newline at end of file
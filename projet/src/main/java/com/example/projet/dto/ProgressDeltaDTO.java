@@ -0,0 +1,24 @@
+package com.example.projet.dto;
+
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Fields of a running task that change while it downloads, as pushed on the progress stream.
+ * Clients merge it into the full {@link DownloadProgressDTO} they already have.
+ */
+@Data
+public class ProgressDeltaDTO {
+    private Long id;
+    private DownloadStatus status;
+    private long downloadedBytes;
+    private double progress;
+    private double downloadSpeed;
+    private double averageSpeed;
+    private double peakSpeed;
+    private Long etaSeconds;
+    private int activeConnections;
+    private List<SegmentProgressDTO> segments;
+}
@@ -0,0 +1,15 @@
+package com.example.projet.dto;
+
+import lombok.Data;
+
+@Data
+public class SegmentProgressDTO {
+    private int index;
+    private long startOffset;
+    private long endOffset;
+    private long downloadedBytes;
+    private double speed;
+    private boolean active;
+    /** Host the latest attempt went to: the task's own or one of its mirrors. */
+    private String source;
+}
@@ -0,0 +1,29 @@
+package com.example.projet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One URL in the content cache: the validators it was downloaded with and the SHA-256 of its
+ * content, which names the cached blob. Several URLs may share a blob.
+ */
+@Entity
+@Data
+@Table(indexes = @Index(name = "idx_cache_entry_url", columnList = "url", unique = true))
+public class CacheEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "url", length = 2048)
+    private String url;
+    private String etag;
+    private String lastModified;
+    @Column(length = 64)
+    private String contentHash;
+    private long size;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastAccessAt;
+}
@@ -0,0 +1,22 @@
+package com.example.projet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One batch submission: how many URLs were sent and how many passed the HEAD probe and became
+ * {@link DownloadTask}s (linked through {@code batchId}).
+ */
+@Entity
+@Data
+public class DownloadBatch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private int submitted;
+    private int accepted;
+    private LocalDateTime createdAt;
+}
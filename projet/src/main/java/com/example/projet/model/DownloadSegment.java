@@ -0,0 +1,26 @@
+package com.example.projet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Checkpoint of one byte range of a {@link DownloadTask}: the range bounds (inclusive) and how
+ * many bytes from {@code startOffset} are confirmed on disk, so a resume only fetches the rest.
+ */
+@Entity
+@Data
+@Table(indexes = @Index(name = "idx_download_segment_task", columnList = "task_id"))
+public class DownloadSegment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "task_id")
+    private Long taskId;
+    private int segmentIndex;
+    private long startOffset;
+    private long endOffset;
+    private long downloadedBytes;
+    /** CRC32C of the first downloadedBytes of the range, when the task is verified. */
+    private Long crc32c;
+}
@@ -8,23 +8,66 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = {
+        @Index(name = "idx_download_task_created", columnList = "created_at, id"),
+        @Index(name = "idx_download_task_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_download_task_host_created", columnList = "host, created_at, id"),
+        @Index(name = "idx_download_task_batch", columnList = "batch_id"),
+        @Index(name = "idx_download_task_url", columnList = "url, status")
+})
 public class DownloadTask {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     private String url;
+    /** Other URLs serving the same content, one per line; segments are spread over them and url. */
+    @Column(length = 8000)
+    private String mirrorUrls;
+    @Column(name = "host")
+    private String host;
     private String fileName;
     private String filePath;
     private long fileSize;
     private long downloadedBytes;
+    @Column(name = "status")
     private DownloadStatus status;
+    private DownloadPriority priority = DownloadPriority.NORMAL;
     private int numberOfThreads;
+    /** When set, numberOfThreads is only the starting point and the engine tunes the count. */
+    private Boolean adaptiveConnections;
+    /** False when the origin ignores Range requests: the task is then fetched as one stream. */
+    private Boolean rangeSupported;
+    @Column(name = "created_at")
     private LocalDateTime createdAt;
     private LocalDateTime completedAt;
     private double downloadSpeed;
+    @Column(name = "batch_id")
+    private Long batchId;
+    private ChecksumAlgorithm checksumAlgorithm;
+    private String expectedChecksum;
+    private String actualChecksum;
+    /** Null until the download completes; false after a mismatch. */
+    private Boolean checksumVerified;
+    @Column(length = 1000)
+    private String integrityError;
+    /** Validators returned by the probe; they key the content cache entry of the finished file. */
+    private String etag;
+    private String lastModified;
+    /** Task whose transfer this one shares until it completes (request coalescing). */
+    @Column(name = "coalesced_into")
+    private Long coalescedInto;
 
     public enum DownloadStatus {
         QUEUED, DOWNLOADING, PAUSED, COMPLETED, FAILED, CANCELLED
     }
+
+    public enum ChecksumAlgorithm {
+        CRC32C, MD5, SHA_256
+    }
+
+    /** Scheduling class, lowest first: the engine admits higher priorities first. */
+    public enum DownloadPriority {
+        LOW, NORMAL, HIGH, URGENT
+    }
 }
@@ -0,0 +1,14 @@
+package com.example.projet.repository;
+
+import com.example.projet.model.CacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CacheEntryRepository extends JpaRepository<CacheEntry, Long> {
+
+    List<CacheEntry> findAllByOrderByLastAccessAt();
+
+}
@@ -0,0 +1,9 @@
+package com.example.projet.repository;
+
+import com.example.projet.model.DownloadBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DownloadBatchRepository extends JpaRepository<DownloadBatch, Long> {
+}
@@ -0,0 +1,17 @@
+package com.example.projet.repository;
+
+import com.example.projet.model.DownloadSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface DownloadSegmentRepository extends JpaRepository<DownloadSegment, Long>, DownloadSegmentRepositoryCustom {
+
+    List<DownloadSegment> findByTaskIdOrderBySegmentIndex(Long taskId);
+
+    @Transactional
+    void deleteByTaskId(Long taskId);
+}
@@ -0,0 +1,14 @@
+package com.example.projet.repository;
+
+import com.example.projet.model.DownloadSegment;
+
+import java.util.List;
+
+public interface DownloadSegmentRepositoryCustom {
+
+    /**
+     * Writes the end offsets, confirmed byte counts and checksums of the given segments in one JDBC batch, without
+     * loading or merging the entities.
+     */
+    void updateDownloadedBytes(List<DownloadSegment> segments);
+}
@@ -0,0 +1,31 @@
+package com.example.projet.repository;
+
+import com.example.projet.model.DownloadSegment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class DownloadSegmentRepositoryImpl implements DownloadSegmentRepositoryCustom {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void updateDownloadedBytes(List<DownloadSegment> segments) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("UPDATE download_segment SET end_offset = ?, downloaded_bytes = ?, crc32c = ? WHERE id = ?",
+                segments, segments.size(), (ps, segment) -> {
+                    ps.setLong(1, segment.getEndOffset());
+                    ps.setLong(2, segment.getDownloadedBytes());
+                    if (segment.getCrc32c() != null) {
+                        ps.setLong(3, segment.getCrc32c());
+                    } else {
+                        ps.setNull(3, Types.BIGINT);
+                    }
+                    ps.setLong(4, segment.getId());
+                });
+    }
+}
@@ -4,9 +4,22 @@ import com.example.projet.model.DownloadTask;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface DownloadTaskRepository extends JpaRepository<DownloadTask, Long> {
+public interface DownloadTaskRepository extends JpaRepository<DownloadTask, Long>, DownloadTaskRepositoryCustom {
+
+    List<DownloadTask> findByStatusInOrderByCreatedAt(Collection<DownloadTask.DownloadStatus> statuses);
+
+    List<DownloadTask> findByBatchIdOrderById(Long batchId);
+
+    Optional<DownloadTask> findFirstByUrlAndCoalescedIntoIsNullAndStatusInOrderById(
+            String url, Collection<DownloadTask.DownloadStatus> statuses);
 
+    List<DownloadTask> findByCoalescedIntoIsNotNullAndStatusIn(Collection<DownloadTask.DownloadStatus> statuses);
 
+    boolean existsByFilePathAndIdNot(String filePath, Long id);
 
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.example.projet.repository;
+
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.ChecksumAlgorithm;
+import com.example.projet.model.DownloadTask.DownloadPriority;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface DownloadTaskRepositoryCustom {
+
+    /** Live progress of one task as written by the progress flusher. */
+    record ProgressUpdate(Long taskId, long downloadedBytes, double downloadSpeed) {
+    }
+
+    /** Listing columns of one task, read without loading the entity. */
+    record DownloadTaskSummary(Long id, String fileName, String url, String host, long fileSize,
+                               long downloadedBytes, double downloadSpeed, DownloadStatus status,
+                               DownloadPriority priority, ChecksumAlgorithm checksumAlgorithm,
+                               String expectedChecksum, String actualChecksum, Boolean checksumVerified,
+                               String integrityError, LocalDateTime createdAt, LocalDateTime completedAt) {
+    }
+
+    /** Task count and byte totals of one status within a batch. */
+    record BatchStatusTotals(DownloadStatus status, long tasks, long fileSize, long downloadedBytes) {
+    }
+
+    /**
+     * One page of a keyset-paginated listing ordered by {@code (createdAt, id)}. Every filter is
+     * optional; {@code afterCreatedAt}/{@code afterId} are the sort key of the last row of the
+     * previous page, or null for the first page.
+     */
+    record SummaryQuery(Collection<DownloadStatus> statuses, String host, LocalDateTime createdFrom,
+                        LocalDateTime createdTo, boolean ascending, LocalDateTime afterCreatedAt,
+                        Long afterId, int limit) {
+    }
+
+    /**
+     * Reads one page of task summaries. Rows are filtered and positioned on the indexed
+     * {@code (status|host, created_at, id)} columns, so the cost depends on the page size, not
+     * on the size of the history.
+     */
+    List<DownloadTaskSummary> findSummaries(SummaryQuery query);
+
+    /**
+     * Writes the downloaded bytes and speed of the given tasks in one JDBC batch, without loading or
+     * merging the entities.
+     */
+    void updateProgress(List<ProgressUpdate> updates);
+
+    /**
+     * Inserts new tasks with batched JDBC inserts, bypassing the persistence context. Generated
+     * ids are not read back: load the tasks again (e.g. by batch id) to get them.
+     */
+    void insertAll(List<DownloadTask> tasks);
+
+    /** Per-status task counts and byte totals of a batch, in one grouped query. */
+    List<BatchStatusTotals> findBatchTotals(Long batchId);
+}
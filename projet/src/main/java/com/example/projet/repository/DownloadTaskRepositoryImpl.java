@@ -0,0 +1,135 @@
+package com.example.projet.repository;
+
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadPriority;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class DownloadTaskRepositoryImpl implements DownloadTaskRepositoryCustom {
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    @Override
+    public List<DownloadTaskSummary> findSummaries(SummaryQuery query) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DownloadTaskSummary> cq = cb.createQuery(DownloadTaskSummary.class);
+        Root<DownloadTask> task = cq.from(DownloadTask.class);
+        Path<LocalDateTime> createdAt = task.get("createdAt");
+        Path<Long> id = task.get("id");
+
+        List<Predicate> where = new ArrayList<>();
+        if (query.statuses() != null && !query.statuses().isEmpty()) {
+            where.add(task.get("status").in(query.statuses()));
+        }
+        if (query.host() != null) {
+            where.add(cb.equal(task.get("host"), query.host()));
+        }
+        if (query.createdFrom() != null) {
+            where.add(cb.greaterThanOrEqualTo(createdAt, query.createdFrom()));
+        }
+        if (query.createdTo() != null) {
+            where.add(cb.lessThan(createdAt, query.createdTo()));
+        }
+        if (query.afterCreatedAt() != null && query.afterId() != null) {
+            LocalDateTime after = query.afterCreatedAt();
+            where.add(query.ascending()
+                    ? cb.or(cb.greaterThan(createdAt, after),
+                            cb.and(cb.equal(createdAt, after), cb.greaterThan(id, query.afterId())))
+                    : cb.or(cb.lessThan(createdAt, after),
+                            cb.and(cb.equal(createdAt, after), cb.lessThan(id, query.afterId()))));
+        }
+
+        cq.select(cb.construct(DownloadTaskSummary.class,
+                        id, task.get("fileName"), task.get("url"), task.get("host"), task.get("fileSize"),
+                        task.get("downloadedBytes"), task.get("downloadSpeed"), task.get("status"),
+                        task.get("priority"), task.get("checksumAlgorithm"), task.get("expectedChecksum"),
+                        task.get("actualChecksum"), task.get("checksumVerified"), task.get("integrityError"), createdAt, task.get("completedAt")))
+                .where(where.toArray(new Predicate[0]))
+                .orderBy(query.ascending()
+                        ? List.of(cb.asc(createdAt), cb.asc(id))
+                        : List.of(cb.desc(createdAt), cb.desc(id)));
+
+        return entityManager.createQuery(cq)
+                .setMaxResults(query.limit())
+                .getResultList();
+    }
+
+    @Override
+    public void updateProgress(List<ProgressUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("UPDATE download_task SET downloaded_bytes = ?, download_speed = ? WHERE id = ?",
+                updates, updates.size(), (ps, update) -> {
+                    ps.setLong(1, update.downloadedBytes());
+                    ps.setDouble(2, update.downloadSpeed());
+                    ps.setLong(3, update.taskId());
+                });
+    }
+
+    @Override
+    public void insertAll(List<DownloadTask> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO download_task (url, host, file_name, file_path, file_size, "
+                        + "downloaded_bytes, status, priority, number_of_threads, adaptive_connections, created_at, "
+                        + "download_speed, batch_id, checksum_algorithm, expected_checksum, etag, last_modified, "
+                        + "range_supported, mirror_urls) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                tasks, INSERT_BATCH_SIZE, (ps, task) -> {
+                    DownloadPriority priority = task.getPriority() != null ? task.getPriority() : DownloadPriority.NORMAL;
+                    ps.setString(1, task.getUrl());
+                    ps.setString(2, task.getHost());
+                    ps.setString(3, task.getFileName());
+                    ps.setString(4, task.getFilePath());
+                    ps.setLong(5, task.getFileSize());
+                    ps.setLong(6, task.getDownloadedBytes());
+                    ps.setInt(7, task.getStatus().ordinal());
+                    ps.setInt(8, priority.ordinal());
+                    ps.setInt(9, task.getNumberOfThreads());
+                    ps.setBoolean(10, Boolean.TRUE.equals(task.getAdaptiveConnections()));
+                    ps.setTimestamp(11, Timestamp.valueOf(task.getCreatedAt()));
+                    ps.setDouble(12, task.getDownloadSpeed());
+                    if (task.getBatchId() != null) {
+                        ps.setLong(13, task.getBatchId());
+                    } else {
+                        ps.setNull(13, Types.BIGINT);
+                    }
+                    if (task.getChecksumAlgorithm() != null) {
+                        ps.setInt(14, task.getChecksumAlgorithm().ordinal());
+                    } else {
+                        ps.setNull(14, Types.INTEGER);
+                    }
+                    ps.setString(15, task.getExpectedChecksum());
+                    ps.setString(16, task.getEtag());
+                    ps.setString(17, task.getLastModified());
+                    ps.setBoolean(18, !Boolean.FALSE.equals(task.getRangeSupported()));
+                    ps.setString(19, task.getMirrorUrls());
+                });
+    }
+
+    @Override
+    public List<BatchStatusTotals> findBatchTotals(Long batchId) {
+        return jdbcTemplate.query("SELECT status, COUNT(*), COALESCE(SUM(file_size), 0), "
+                        + "COALESCE(SUM(downloaded_bytes), 0) FROM download_task WHERE batch_id = ? GROUP BY status",
+                (rs, rowNum) -> new BatchStatusTotals(DownloadStatus.values()[rs.getInt(1)],
+                        rs.getLong(2), rs.getLong(3), rs.getLong(4)),
+                batchId);
+    }
+}
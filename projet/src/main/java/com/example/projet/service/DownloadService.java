@@ -1,7 +1,14 @@
 package com.example.projet.service;
 
+import com.example.projet.dto.BandwidthSettingsDTO;
+import com.example.projet.dto.BatchDownloadRequestDTO;
+import com.example.projet.dto.BatchProgressDTO;
+import com.example.projet.dto.BatchSubmissionDTO;
+import com.example.projet.dto.DownloadFilterDTO;
+import com.example.projet.dto.DownloadPageDTO;
 import com.example.projet.dto.DownloadProgressDTO;
 import com.example.projet.dto.DownloadRequestDTO;
+import com.example.projet.dto.ProgressDeltaDTO;
 import com.example.projet.exception.DownloadException;
 import com.example.projet.model.DownloadTask;
 
@@ -9,10 +16,17 @@ import java.util.List;
 
 public interface DownloadService {
     DownloadTask startDownload(DownloadRequestDTO request) throws DownloadException;
+    BatchSubmissionDTO submitBatch(BatchDownloadRequestDTO request) throws DownloadException;
+    BatchProgressDTO getBatchProgress(Long batchId) throws DownloadException;
     void pauseDownload(Long taskId) throws DownloadException;
     void resumeDownload(Long taskId) throws DownloadException;
     void cancelDownload(Long taskId) throws DownloadException;
     DownloadProgressDTO getDownloadProgress(Long taskId) throws DownloadException;
-    List<DownloadProgressDTO> getAllDownloads();
+    DownloadPageDTO getDownloads(DownloadFilterDTO filter) throws DownloadException;
+    List<ProgressDeltaDTO> getLiveProgress();
     void deleteDownload(Long taskId) throws DownloadException;
+    BandwidthSettingsDTO getBandwidthSettings();
+    void setGlobalBandwidth(long bytesPerSecond);
+    void setHostBandwidth(String host, long bytesPerSecond);
+    void setTaskBandwidth(Long taskId, long bytesPerSecond) throws DownloadException;
 } //bj
\ No newline at end of file
@@ -1,114 +1,455 @@
 package com.example.projet.service;
 
+import com.example.projet.dto.BandwidthSettingsDTO;
+import com.example.projet.dto.BatchDownloadRequestDTO;
+import com.example.projet.dto.BatchProgressDTO;
+import com.example.projet.dto.BatchRejectionDTO;
+import com.example.projet.dto.BatchSubmissionDTO;
+import com.example.projet.dto.ConnectionChangeDTO;
+import com.example.projet.dto.DownloadFilterDTO;
+import com.example.projet.dto.DownloadPageDTO;
 import com.example.projet.dto.DownloadProgressDTO;
 import com.example.projet.dto.DownloadRequestDTO;
+import com.example.projet.dto.ProgressDeltaDTO;
+import com.example.projet.dto.SegmentProgressDTO;
 import com.example.projet.exception.DownloadException;
+import com.example.projet.model.CacheEntry;
+import com.example.projet.model.DownloadBatch;
 import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.ChecksumAlgorithm;
+import com.example.projet.model.DownloadTask.DownloadPriority;
 import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.repository.DownloadBatchRepository;
+import com.example.projet.repository.DownloadSegmentRepository;
 import com.example.projet.repository.DownloadTaskRepository;
-import com.example.projet.task.DownloadTaskExecutor;
+import com.example.projet.repository.DownloadTaskRepositoryCustom.BatchStatusTotals;
+import com.example.projet.repository.DownloadTaskRepositoryCustom.DownloadTaskSummary;
+import com.example.projet.repository.DownloadTaskRepositoryCustom.SummaryQuery;
+import com.example.projet.task.BandwidthLimiter;
+import com.example.projet.task.ContentCache;
+import com.example.projet.task.DownloadEngine;
+import com.example.projet.task.DownloadMetrics;
+import com.example.projet.task.DownloadMetrics.Submission;
+import com.example.projet.task.DownloadStatusChanged;
+import com.example.projet.task.ProgressRegistry;
+import com.example.projet.task.RequestCoalescer;
+import com.example.projet.task.TaskProgress;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.HttpStatus;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.HttpsURLConnection;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DownloadServiceImpl implements DownloadService {
+    private static final int MAX_PAGE_SIZE = 500;
 
     private final DownloadTaskRepository repository;
-    private final DownloadTaskExecutor taskExecutor;
+    private final DownloadSegmentRepository segmentRepository;
+    private final DownloadBatchRepository batchRepository;
+    private final DownloadEngine downloadEngine;
+    private final ProgressRegistry progressRegistry;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private final UrlProber urlProber;
+    private final ContentCache contentCache;
+    private final RequestCoalescer requestCoalescer;
+    private final DownloadMetrics downloadMetrics;
 
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
-    private final SSLContext sslContext;
     @Value("${file.storage.location}")
     private String storageLocation;
-    private HttpURLConnection createConnection(URL url) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-        if (connection instanceof HttpsURLConnection) {
-            ((HttpsURLConnection) connection).setSSLSocketFactory(sslContext.getSocketFactory());
-            ((HttpsURLConnection) connection).setHostnameVerifier((hostname, session) -> true);
-        }
-
-        connection.setRequestProperty("User-Agent", "Mozilla/5.0");
-        connection.setConnectTimeout(30000);
-        connection.setReadTimeout(30000);
-        connection.setInstanceFollowRedirects(true);
-
-        return connection;
-    }
 
+    /**
+     * Not transactional: the HEAD probe can take up to the response timeout and must not hold a
+     * database connection; the task is saved in its own short transaction afterwards.
+     */
     @Override
-    @Transactional
     public DownloadTask startDownload(DownloadRequestDTO request) throws DownloadException {
         try {
-            // Validate URL and get file info
+            String checksumError = checkChecksum(request);
+            if (checksumError != null) {
+                downloadMetrics.submitted(Submission.REJECTED);
+                throw new DownloadException(checksumError);
+            }
+
+            // Determine file name and prepare storage
             URL url = new URL(request.getUrl());
-            HttpURLConnection connection = createConnection(url);            connection.setRequestMethod("HEAD");
-            connection.setInstanceFollowRedirects(true); // Autorise les redirections
+            String fileName = determineFileName(request.getFileName(), request.getUrl());
+            Path downloadPath = prepareDownloadDirectory(fileName);
 
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new DownloadException("Invalid URL or resource not available. Response code: " + responseCode);
+            // Serve from the content cache when the content is known to be current
+            UrlProber.Probe probe = null;
+            if (contentCache.isEnabled()) {
+                String sha256 = hasChecksum(request) && checksumAlgorithm(request) == ChecksumAlgorithm.SHA_256
+                        ? request.getExpectedChecksum().trim().toLowerCase() : null;
+                CacheEntry cached = contentCache.lookup(url.toString());
+                if (sha256 != null && contentCache.contains(sha256)) {
+                    downloadMetrics.submitted(Submission.CACHED);
+                    return completeFromCache(request, url, fileName, downloadPath, sha256, null);
+                }
+                if (cached != null && isRevalidatable(request, cached, sha256)) {
+                    probe = urlProber.revalidate(url.toURI(), cached.getEtag(), cached.getLastModified());
+                    if (probe.status() == HttpStatus.SC_NOT_MODIFIED) {
+                        downloadMetrics.submitted(Submission.CACHED);
+                        return completeFromCache(request, url, fileName, downloadPath, cached.getContentHash(), cached);
+                    }
+                }
+                contentCache.recordMiss();
             }
 
-            long fileSize = connection.getContentLengthLong();
-            if (fileSize <= 0) {
-                throw new DownloadException("Could not determine file size or file is empty");
+            // Share the transfer of an identical download already in flight
+            DownloadTask follower = requestCoalescer.attach(createDownloadTask(request, url, 0, fileName, downloadPath));
+            if (follower != null) {
+                eventPublisher.publishEvent(new DownloadStatusChanged(follower.getId()));
+                downloadMetrics.submitted(Submission.COALESCED);
+                return follower;
             }
 
-            // Determine file name and prepare storage
-            String fileName = determineFileName(request.getFileName(), request.getUrl());
-            Path downloadPath = prepareDownloadDirectory(fileName);
+            // Validate URL and get file info; a 200 to the revalidation already carries it
+            if (probe == null || !probe.isConclusive()) {
+                probe = urlProber.probe(url.toURI());
+            }
+            String rejection = checkProbe(probe);
+            List<URI> mirrors = mirrorUris(request);
+            if (rejection == null && !mirrors.isEmpty()) {
+                rejection = checkMirrors(request, probe, mirrors, urlProber.probeAll(mirrors));
+            }
+            if (rejection != null) {
+                downloadMetrics.submitted(Submission.REJECTED);
+                throw new DownloadException(rejection);
+            }
+            long fileSize = probe.contentLength();
 
             // Create and save download task
             DownloadTask task = createDownloadTask(request, url, fileSize, fileName, downloadPath);
+            applyProbe(task, probe);
             DownloadTask savedTask = repository.save(task);
+            eventPublisher.publishEvent(new DownloadStatusChanged(savedTask.getId()));
 
-            // Start the download in the background
-            executorService.submit(() -> {
-                try {
-                    taskExecutor.executeDownload(savedTask);
-                } catch (Exception e) {
-                    log.error("Download execution failed for task {}", savedTask.getId(), e);
-                    updateTaskStatus(savedTask.getId(), DownloadStatus.FAILED);
-                }
-            });
+            // Queue the download; the engine starts it once a connection slot is free
+            submitAfterCommit(savedTask);
+            downloadMetrics.submitted(Submission.QUEUED);
 
             return savedTask;
-        } catch (IOException e) {
+        } catch (IOException | URISyntaxException e) {
+            downloadMetrics.submitted(Submission.REJECTED);
             throw new DownloadException("Failed to initiate download: " + e.getMessage(), e);
         }
     }
 
 
-    private void configureConnection(HttpURLConnection connection) {
-        connection.setConnectTimeout(30000); // Timeout de connexion
-        connection.setReadTimeout(30000); // Timeout de lecture
-        connection.setRequestProperty("User-Agent", "Mozilla/5.0");
+    /**
+     * Probes every URL and mirror concurrently, then inserts the accepted tasks with batched JDBC
+     * inserts and queues them in one call. Entries that fail validation or the probe are
+     * reported with their index and are not stored.
+     */
+    @Override
+    public BatchSubmissionDTO submitBatch(BatchDownloadRequestDTO request) throws DownloadException {
+        List<DownloadRequestDTO> entries = request.getDownloads();
+        List<BatchRejectionDTO> rejected = new ArrayList<>();
+        List<Integer> probedIndices = new ArrayList<>(entries.size());
+        List<URL> urls = new ArrayList<>(entries.size());
+        List<URI> uris = new ArrayList<>(entries.size());
+        List<List<URI>> mirrorUris = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            String url = entries.get(i).getUrl();
+            String checksumError = checkChecksum(entries.get(i));
+            if (checksumError != null) {
+                rejected.add(new BatchRejectionDTO(i, url, checksumError));
+                continue;
+            }
+            try {
+                URL parsed = new URL(url);
+                URI uri = parsed.toURI();
+                mirrorUris.add(mirrorUris(entries.get(i)));
+                uris.add(uri);
+                urls.add(parsed);
+                probedIndices.add(i);
+            } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+                rejected.add(new BatchRejectionDTO(i, url, "Invalid URL: " + e.getMessage()));
+            }
+        }
+
+        // Mirrors are probed in the same round, after all the URLs
+        List<URI> probed = new ArrayList<>(uris);
+        mirrorUris.forEach(probed::addAll);
+        List<UrlProber.Probe> allProbes = urlProber.probeAll(probed);
+        List<UrlProber.Probe> probes = allProbes.subList(0, uris.size());
+        int nextMirror = uris.size();
+
+        Path downloadDir;
+        try {
+            downloadDir = prepareDownloadDirectory("");
+        } catch (IOException e) {
+            throw new DownloadException("Failed to prepare storage: " + e.getMessage(), e);
+        }
+        List<DownloadTask> tasks = new ArrayList<>(probes.size());
+        for (int i = 0; i < probes.size(); i++) {
+            int index = probedIndices.get(i);
+            DownloadRequestDTO entry = entries.get(index);
+            List<URI> mirrors = mirrorUris.get(i);
+            List<UrlProber.Probe> mirrorProbes = allProbes.subList(nextMirror, nextMirror + mirrors.size());
+            nextMirror += mirrors.size();
+            String rejection = checkProbe(probes.get(i));
+            if (rejection == null && !mirrors.isEmpty()) {
+                rejection = checkMirrors(entry, probes.get(i), mirrors, mirrorProbes);
+            }
+            if (rejection != null) {
+                rejected.add(new BatchRejectionDTO(index, entry.getUrl(), rejection));
+                continue;
+            }
+            String fileName = determineFileName(entry.getFileName(), entry.getUrl());
+            DownloadTask task = createDownloadTask(entry, urls.get(i), probes.get(i).contentLength(), fileName,
+                    downloadDir.resolve(fileName));
+            applyProbe(task, probes.get(i));
+            tasks.add(task);
+        }
+        rejected.sort(Comparator.comparingInt(BatchRejectionDTO::getIndex));
+
+        DownloadBatch batch = new DownloadBatch();
+        batch.setSubmitted(entries.size());
+        batch.setAccepted(tasks.size());
+        batch.setCreatedAt(LocalDateTime.now());
+        List<DownloadTask> saved = transactionTemplate.execute(status -> {
+            DownloadBatch savedBatch = batchRepository.save(batch);
+            tasks.forEach(task -> task.setBatchId(savedBatch.getId()));
+            repository.insertAll(tasks);
+            return repository.findByBatchIdOrderById(savedBatch.getId());
+        });
+
+        // Committed: queue the whole batch with a single dispatch
+        downloadEngine.submitAll(saved);
+        downloadMetrics.submitted(Submission.QUEUED, tasks.size());
+        downloadMetrics.submitted(Submission.REJECTED, rejected.size());
+        log.info("Batch {} queued {} of {} downloads", batch.getId(), tasks.size(), entries.size());
+        return new BatchSubmissionDTO(batch.getId(), entries.size(), tasks.size(), rejected);
+    }
+
+    @Override
+    public BatchProgressDTO getBatchProgress(Long batchId) throws DownloadException {
+        DownloadBatch batch = batchRepository.findById(batchId)
+                .orElseThrow(() -> new DownloadException("Download batch not found"));
+        BatchProgressDTO dto = new BatchProgressDTO();
+        dto.setBatchId(batch.getId());
+        dto.setCreatedAt(batch.getCreatedAt());
+        dto.setSubmitted(batch.getSubmitted());
+        dto.setAccepted(batch.getAccepted());
+        Map<DownloadStatus, Long> tasksByStatus = new EnumMap<>(DownloadStatus.class);
+        long fileSize = 0;
+        long downloadedBytes = 0;
+        for (BatchStatusTotals totals : repository.findBatchTotals(batchId)) {
+            tasksByStatus.put(totals.status(), totals.tasks());
+            fileSize += totals.fileSize();
+            downloadedBytes += totals.downloadedBytes();
+        }
+        dto.setTasksByStatus(tasksByStatus);
+        dto.setFileSize(fileSize);
+        dto.setDownloadedBytes(downloadedBytes);
+        dto.setProgress(calculateProgress(downloadedBytes, fileSize));
+        dto.setFinished(!tasksByStatus.containsKey(DownloadStatus.QUEUED)
+                && !tasksByStatus.containsKey(DownloadStatus.DOWNLOADING));
+        return dto;
+    }
+
+    /**
+     * Whether a cached copy of the URL may answer the request once the origin confirms it: it
+     * needs a validator, and an expected checksum other than its SHA-256 could never match.
+     */
+    private boolean isRevalidatable(DownloadRequestDTO request, CacheEntry cached, String sha256) {
+        if (cached.getEtag() == null && cached.getLastModified() == null) {
+            return false;
+        }
+        if (sha256 != null) {
+            return sha256.equals(cached.getContentHash());
+        }
+        return !hasChecksum(request);
+    }
+
+    /** Saves a task completed by linking the cached blob into place, without any transfer. */
+    private DownloadTask completeFromCache(DownloadRequestDTO request, URL url, String fileName, Path downloadPath,
+                                           String sha256, CacheEntry cached) throws IOException {
+        long size = contentCache.materialize(sha256, downloadPath);
+        DownloadTask task = createDownloadTask(request, url, size, fileName, downloadPath);
+        task.setDownloadedBytes(size);
+        task.setStatus(DownloadStatus.COMPLETED);
+        task.setCompletedAt(LocalDateTime.now());
+        if (cached != null) {
+            task.setEtag(cached.getEtag());
+            task.setLastModified(cached.getLastModified());
+            contentCache.touch(cached);
+        }
+        if (task.getChecksumAlgorithm() == ChecksumAlgorithm.SHA_256) {
+            task.setActualChecksum(sha256);
+            task.setChecksumVerified(true);
+        }
+        DownloadTask savedTask = repository.save(task);
+        eventPublisher.publishEvent(new DownloadStatusChanged(savedTask.getId()));
+        log.info("Task {} served from the content cache ({} bytes)", savedTask.getId(), size);
+        return savedTask;
+    }
+
+    /** The task that owns the transfer: the leader of a coalesced request, or the task itself. */
+    private Long transferOf(Long taskId) {
+        Long leaderId = requestCoalescer.leaderOf(taskId);
+        return leaderId != null ? leaderId : taskId;
+    }
+
+    /** Why a probed resource cannot be downloaded, or {@code null} if it can. */
+    private String checkProbe(UrlProber.Probe probe) {
+        if (probe.error() != null) {
+            return "Probe failed: " + probe.error();
+        }
+        if (probe.status() != HttpStatus.SC_OK) {
+            return "Invalid URL or resource not available. Response code: " + probe.status();
+        }
+        // An unknown length (-1) is fine: the file is then streamed until the body ends
+        if (probe.contentLength() == 0) {
+            return "File is empty";
+        }
+        return null;
+    }
+
+    /**
+     * Why the mirrors of a request cannot be used, or {@code null} if they can. Segments are
+     * spread over the mirrors, so the URL and every mirror must serve ranges of a known, equal
+     * size. Without an expected checksum to catch a mirror serving other bytes, the ETags must
+     * match too.
+     */
+    private String checkMirrors(DownloadRequestDTO request, UrlProber.Probe probe, List<URI> mirrors,
+                                List<UrlProber.Probe> mirrorProbes) {
+        if (!Boolean.TRUE.equals(probe.ranges()) || probe.contentLength() < 0) {
+            return "Mirrors need Range support and a known size on " + request.getUrl();
+        }
+        for (int i = 0; i < mirrors.size(); i++) {
+            URI mirror = mirrors.get(i);
+            UrlProber.Probe mirrorProbe = mirrorProbes.get(i);
+            String rejection = checkProbe(mirrorProbe);
+            if (rejection != null) {
+                return "Mirror " + mirror + ": " + rejection;
+            }
+            if (!Boolean.TRUE.equals(mirrorProbe.ranges())) {
+                return "Mirror " + mirror + " does not support Range requests";
+            }
+            if (mirrorProbe.contentLength() != probe.contentLength()) {
+                return "Mirror " + mirror + " serves " + mirrorProbe.contentLength() + " bytes, "
+                        + request.getUrl() + " serves " + probe.contentLength();
+            }
+            if (!hasChecksum(request) && !sameEtag(probe.etag(), mirrorProbe.etag())) {
+                return "Mirror " + mirror + " has ETag " + mirrorProbe.etag() + ", " + request.getUrl()
+                        + " has " + probe.etag() + "; give an expected checksum to use mirrors without matching ETags";
+            }
+        }
+        return null;
+    }
+
+    /** Weak comparison: W/"x" and "x" match, a missing ETag matches nothing. */
+    private static boolean sameEtag(String etag, String other) {
+        return etag != null && other != null && stripWeak(etag).equals(stripWeak(other));
+    }
+
+    private static String stripWeak(String etag) {
+        String trimmed = etag.trim();
+        return trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed;
+    }
+
+    /** The distinct mirror URLs of a request, blanks and the request's own URL left out. */
+    private static List<String> mirrorUrls(DownloadRequestDTO request) {
+        if (request.getMirrors() == null) {
+            return List.of();
+        }
+        return request.getMirrors().stream()
+                .filter(url -> url != null && !url.isBlank())
+                .map(String::trim)
+                .filter(url -> !url.equals(request.getUrl().trim()))
+                .distinct()
+                .toList();
+    }
+
+    private static List<URI> mirrorUris(DownloadRequestDTO request) throws IOException, URISyntaxException {
+        List<URI> uris = new ArrayList<>();
+        for (String url : mirrorUrls(request)) {
+            uris.add(new URL(url).toURI());
+        }
+        return uris;
+    }
 
-        // Gérer les connexions HTTPS
-        if (connection instanceof HttpsURLConnection) {
-            ((HttpsURLConnection) connection).setHostnameVerifier((hostname, session) -> true);
+    /**
+     * Copies what the probe learned onto a new task. Without Range support, or without a known
+     * length, the task is fetched as a single stream.
+     */
+    private void applyProbe(DownloadTask task, UrlProber.Probe probe) {
+        task.setEtag(probe.etag());
+        task.setLastModified(probe.lastModified());
+        task.setRangeSupported(Boolean.TRUE.equals(probe.ranges()));
+        if (!task.getRangeSupported() || task.getFileSize() < 0) {
+            task.setNumberOfThreads(1);
+            task.setAdaptiveConnections(false);
         }
     }
 
+    private boolean hasChecksum(DownloadRequestDTO request) {
+        return request.getExpectedChecksum() != null && !request.getExpectedChecksum().isBlank();
+    }
+
+    /** The requested algorithm, or the one whose hex length matches the expected checksum. */
+    private ChecksumAlgorithm checksumAlgorithm(DownloadRequestDTO request) {
+        if (request.getChecksumAlgorithm() != null) {
+            return request.getChecksumAlgorithm();
+        }
+        return switch (request.getExpectedChecksum().trim().length()) {
+            case 8 -> ChecksumAlgorithm.CRC32C;
+            case 32 -> ChecksumAlgorithm.MD5;
+            case 64 -> ChecksumAlgorithm.SHA_256;
+            default -> null;
+        };
+    }
+
+    /** Why the checksum of a request is unusable, or {@code null} if it is fine or absent. */
+    private String checkChecksum(DownloadRequestDTO request) {
+        if (!hasChecksum(request)) {
+            return null;
+        }
+        ChecksumAlgorithm algorithm = checksumAlgorithm(request);
+        if (algorithm == null) {
+            return "Cannot infer the checksum algorithm, set checksumAlgorithm";
+        }
+        int expectedLength = switch (algorithm) {
+            case CRC32C -> 8;
+            case MD5 -> 32;
+            case SHA_256 -> 64;
+        };
+        if (request.getExpectedChecksum().trim().length() != expectedLength) {
+            return "A " + algorithm + " checksum has " + expectedLength + " hex digits";
+        }
+        return null;
+    }
 
     private String determineFileName(String customName, String urlString) {
         if (customName != null && !customName.trim().isEmpty()) {
@@ -135,12 +476,21 @@ public class DownloadServiceImpl implements DownloadService {
                                             String fileName, Path downloadPath) {
         DownloadTask task = new DownloadTask();
         task.setUrl(url.toString());
+        List<String> mirrors = mirrorUrls(request);
+        task.setMirrorUrls(mirrors.isEmpty() ? null : String.join("\n", mirrors));
+        task.setHost(url.getHost() != null ? url.getHost().toLowerCase() : "");
         task.setFileName(fileName);
         task.setFilePath(downloadPath.toString());
         task.setFileSize(fileSize);
         task.setDownloadedBytes(0);
         task.setStatus(DownloadStatus.QUEUED);
+        task.setPriority(request.getPriority() != null ? request.getPriority() : DownloadPriority.NORMAL);
         task.setNumberOfThreads(Math.max(1, Math.min(request.getNumberOfThreads(), 16))); // Limite des threads à 16 max
+        task.setAdaptiveConnections(request.isAdaptiveConnections());
+        if (hasChecksum(request)) {
+            task.setChecksumAlgorithm(checksumAlgorithm(request));
+            task.setExpectedChecksum(request.getExpectedChecksum().trim().toLowerCase());
+        }
         task.setCreatedAt(LocalDateTime.now());
         return task;
     }
@@ -148,26 +498,36 @@ public class DownloadServiceImpl implements DownloadService {
     @Override
     @Transactional
     public void pauseDownload(Long taskId) throws DownloadException {
+        taskId = transferOf(taskId);
         DownloadTask task = getTaskById(taskId);
-        if (task.getStatus() != DownloadStatus.DOWNLOADING) {
+        if (task.getStatus() != DownloadStatus.DOWNLOADING && task.getStatus() != DownloadStatus.QUEUED) {
             throw new DownloadException("Download is not in progress");
         }
         task.setStatus(DownloadStatus.PAUSED);
         repository.save(task);
-        taskExecutor.pauseDownload(taskId);
+        requestCoalescer.mirror(task);
+        eventPublisher.publishEvent(new DownloadStatusChanged(taskId));
+        downloadEngine.pause(taskId);
         log.info("Download paused for task {}", taskId);
     }
 
     @Override
     @Transactional
     public void resumeDownload(Long taskId) throws DownloadException {
+        taskId = transferOf(taskId);
         DownloadTask task = getTaskById(taskId);
-        if (task.getStatus() != DownloadStatus.PAUSED) {
+        // A failed task resumes from its checkpoints, e.g. to re-fetch segments that failed verification
+        if (task.getStatus() != DownloadStatus.PAUSED && task.getStatus() != DownloadStatus.FAILED) {
             throw new DownloadException("Download is not paused");
         }
+        if (downloadEngine.isActive(taskId)) {
+            throw new DownloadException("Download is still pausing, try again shortly");
+        }
         task.setStatus(DownloadStatus.QUEUED);
         repository.save(task);
-        executorService.submit(() -> taskExecutor.executeDownload(task));
+        requestCoalescer.mirror(task);
+        eventPublisher.publishEvent(new DownloadStatusChanged(taskId));
+        submitAfterCommit(task);
         log.info("Download resumed for task {}", taskId);
     }
 
@@ -178,9 +538,23 @@ public class DownloadServiceImpl implements DownloadService {
         if (task.getStatus() == DownloadStatus.COMPLETED || task.getStatus() == DownloadStatus.FAILED) {
             throw new DownloadException("Cannot cancel completed or failed download");
         }
+        if (requestCoalescer.leaderOf(taskId) != null) {
+            // One subscriber leaves; the shared transfer goes on for the others
+            requestCoalescer.detach(taskId);
+        } else if (requestCoalescer.requestHandOver(taskId)) {
+            // Still wanted by other requests: stop it at a checkpoint and pass it on
+            if (downloadEngine.isActive(taskId)) {
+                downloadEngine.pause(taskId);
+            } else {
+                requestCoalescer.handOver(taskId);
+            }
+            log.info("Download cancelled for task {}, its transfer is handed over", taskId);
+            return;
+        }
         task.setStatus(DownloadStatus.CANCELLED);
         repository.save(task);
-        taskExecutor.cancelDownload(taskId);
+        eventPublisher.publishEvent(new DownloadStatusChanged(taskId));
+        downloadEngine.cancel(taskId);
         log.info("Download cancelled for task {}", taskId);
     }
 
@@ -192,21 +566,73 @@ public class DownloadServiceImpl implements DownloadService {
                 .orElseThrow(() -> new DownloadException("Download task not found"));
     }
 
+    /**
+     * One keyset page of the listing. Only the listing columns of {@code limit + 1} rows are read,
+     * whatever the size of the history; the extra row only tells whether a next page exists.
+     */
     @Override
     @Transactional(readOnly = true)
-    public List<DownloadProgressDTO> getAllDownloads() {
-        return repository.findAll().stream()
+    public DownloadPageDTO getDownloads(DownloadFilterDTO filter) throws DownloadException {
+        int limit = Math.max(1, Math.min(filter.getLimit(), MAX_PAGE_SIZE));
+        boolean ascending = "asc".equalsIgnoreCase(filter.getOrder());
+        LocalDateTime afterCreatedAt = null;
+        Long afterId = null;
+        if (filter.getCursor() != null && !filter.getCursor().isBlank()) {
+            try {
+                String[] key = new String(Base64.getUrlDecoder().decode(filter.getCursor()),
+                        StandardCharsets.UTF_8).split(",", 2);
+                afterCreatedAt = LocalDateTime.parse(key[0]);
+                afterId = Long.parseLong(key[1]);
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+                throw new DownloadException("Invalid cursor");
+            }
+        }
+        String host = filter.getHost() != null && !filter.getHost().isBlank()
+                ? filter.getHost().toLowerCase() : null;
+
+        List<DownloadTaskSummary> rows = repository.findSummaries(new SummaryQuery(filter.getStatus(), host,
+                filter.getCreatedFrom(), filter.getCreatedTo(), ascending, afterCreatedAt, afterId, limit + 1));
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            DownloadTaskSummary last = rows.get(limit - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.createdAt() + "," + last.id()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new DownloadPageDTO(rows.stream()
                 .map(this::convertToProgressDTO)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), nextCursor);
+    }
+
+    /** Progress of the running tasks, straight from the in-memory registry. */
+    @Override
+    public List<ProgressDeltaDTO> getLiveProgress() {
+        List<ProgressDeltaDTO> deltas = new ArrayList<>();
+        for (TaskProgress live : progressRegistry.active()) {
+            deltas.add(convertToDeltaDTO(live));
+            // Coalesced requests report the progress of the transfer they share
+            for (Long followerId : requestCoalescer.followersOf(live.getTaskId())) {
+                ProgressDeltaDTO delta = convertToDeltaDTO(live);
+                delta.setId(followerId);
+                deltas.add(delta);
+            }
+        }
+        return deltas;
     }
 
     @Override
     @Transactional
     public void deleteDownload(Long taskId) throws DownloadException {
         DownloadTask task = getTaskById(taskId);
+        // A coalesced request has no file of its own yet; its path may be the leader's
+        boolean follower = requestCoalescer.leaderOf(taskId) != null;
+        requestCoalescer.detach(taskId);
         try {
-            // Delete file if exists
-            if (task.getFilePath() != null) {
+            // Delete file if exists, unless another task still has it: a coalesced request
+            // delivered to the same name as its leader shares its file
+            if (task.getFilePath() != null && !follower
+                    && !repository.existsByFilePathAndIdNot(task.getFilePath(), taskId)) {
                 Files.deleteIfExists(Paths.get(task.getFilePath()));
                 // Clean up temp files if any
                 Path tempDir = Paths.get(task.getFilePath()).getParent().resolve("temp");
@@ -222,45 +648,154 @@ public class DownloadServiceImpl implements DownloadService {
                             });
                 }
             }
+            segmentRepository.deleteByTaskId(taskId);
             repository.deleteById(taskId);
+            bandwidthLimiter.removeTask(taskId);
+            eventPublisher.publishEvent(new DownloadStatusChanged(taskId));
             log.info("Download deleted for task {}", taskId);
         } catch (IOException e) {
             throw new DownloadException("Failed to delete download files: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public BandwidthSettingsDTO getBandwidthSettings() {
+        return new BandwidthSettingsDTO(bandwidthLimiter.getGlobalLimit(), bandwidthLimiter.getHostLimits(),
+                bandwidthLimiter.getTaskLimits());
+    }
+
+    @Override
+    public void setGlobalBandwidth(long bytesPerSecond) {
+        bandwidthLimiter.setGlobalLimit(bytesPerSecond);
+        log.info("Global bandwidth limit set to {} B/s", bytesPerSecond);
+    }
+
+    @Override
+    public void setHostBandwidth(String host, long bytesPerSecond) {
+        bandwidthLimiter.setHostLimit(host, bytesPerSecond);
+        log.info("Bandwidth limit for host {} set to {} B/s", host, bytesPerSecond);
+    }
+
+    @Override
+    public void setTaskBandwidth(Long taskId, long bytesPerSecond) throws DownloadException {
+        getTaskById(taskId);
+        bandwidthLimiter.setTaskLimit(taskId, bytesPerSecond);
+        log.info("Bandwidth limit for task {} set to {} B/s", taskId, bytesPerSecond);
+    }
+
     private DownloadTask getTaskById(Long taskId) throws DownloadException {
         return repository.findById(taskId)
                 .orElseThrow(() -> new DownloadException("Download task not found"));
     }
 
     private DownloadProgressDTO convertToProgressDTO(DownloadTask task) {
+        return convertToProgressDTO(new DownloadTaskSummary(task.getId(), task.getFileName(), task.getUrl(),
+                task.getHost(), task.getFileSize(), task.getDownloadedBytes(), task.getDownloadSpeed(),
+                task.getStatus(), task.getPriority(), task.getChecksumAlgorithm(), task.getExpectedChecksum(),
+                task.getActualChecksum(), task.getChecksumVerified(), task.getIntegrityError(),
+                task.getCreatedAt(), task.getCompletedAt()));
+    }
+
+    private DownloadProgressDTO convertToProgressDTO(DownloadTaskSummary task) {
         DownloadProgressDTO dto = new DownloadProgressDTO();
-        dto.setId(task.getId());
-        dto.setFileName(task.getFileName());
-        dto.setUrl(task.getUrl());
-        dto.setFileSize(task.getFileSize());
-        dto.setDownloadedBytes(task.getDownloadedBytes());
-        dto.setProgress(calculateProgress(task));
-        dto.setDownloadSpeed(task.getDownloadSpeed());
-        dto.setStatus(task.getStatus());
-        dto.setCreatedAt(task.getCreatedAt());
-        dto.setCompletedAt(task.getCompletedAt());
+        dto.setId(task.id());
+        dto.setFileName(task.fileName());
+        dto.setUrl(task.url());
+        dto.setHost(task.host());
+        dto.setFileSize(task.fileSize());
+        // Running tasks are read from the in-memory registry; the row lags by one flush
+        TaskProgress live = progressRegistry.get(transferOf(task.id()));
+        long downloadedBytes = live != null ? live.getDownloadedBytes() : task.downloadedBytes();
+        dto.setDownloadedBytes(downloadedBytes);
+        dto.setProgress(calculateProgress(downloadedBytes, task.fileSize()));
+        dto.setDownloadSpeed(live != null ? live.getDownloadSpeed() : task.downloadSpeed());
+        if (live != null) {
+            dto.setAverageSpeed(live.getAverageSpeed());
+            dto.setPeakSpeed(live.getPeakSpeed());
+            dto.setEtaSeconds(live.getEtaSeconds());
+            dto.setActiveConnections(live.getActiveConnections());
+            dto.setAdaptiveConnections(live.isAdaptiveConnections());
+            dto.setConnectionLimit(live.getConnectionLimit());
+            dto.setConnectionHistory(live.getConnectionHistory().stream()
+                    .map(this::convertToConnectionChangeDTO)
+                    .collect(Collectors.toList()));
+            dto.setSegments(live.getSegments().stream()
+                    .map(this::convertToSegmentDTO)
+                    .collect(Collectors.toList()));
+        } else {
+            dto.setSegments(List.of());
+            dto.setConnectionHistory(List.of());
+        }
+        dto.setStatus(task.status());
+        dto.setPriority(task.priority() != null ? task.priority() : DownloadPriority.NORMAL);
+        dto.setChecksumAlgorithm(task.checksumAlgorithm());
+        dto.setExpectedChecksum(task.expectedChecksum());
+        dto.setActualChecksum(task.actualChecksum());
+        dto.setChecksumVerified(task.checksumVerified());
+        dto.setIntegrityError(task.integrityError());
+        dto.setCreatedAt(task.createdAt());
+        dto.setCompletedAt(task.completedAt());
         return dto;
     }
 
-    private double calculateProgress(DownloadTask task) {
-        return task.getFileSize() > 0 ?
-                (double) task.getDownloadedBytes() / task.getFileSize() * 100 : 0;
+    private ProgressDeltaDTO convertToDeltaDTO(TaskProgress live) {
+        ProgressDeltaDTO dto = new ProgressDeltaDTO();
+        dto.setId(live.getTaskId());
+        dto.setStatus(DownloadStatus.DOWNLOADING);
+        dto.setDownloadedBytes(live.getDownloadedBytes());
+        dto.setProgress(calculateProgress(live.getDownloadedBytes(), live.getFileSize()));
+        dto.setDownloadSpeed(live.getDownloadSpeed());
+        dto.setAverageSpeed(live.getAverageSpeed());
+        dto.setPeakSpeed(live.getPeakSpeed());
+        dto.setEtaSeconds(live.getEtaSeconds());
+        dto.setActiveConnections(live.getActiveConnections());
+        dto.setSegments(live.getSegments().stream()
+                .map(this::convertToSegmentDTO)
+                .collect(Collectors.toList()));
+        return dto;
     }
 
-    private void updateTaskStatus(Long taskId, DownloadStatus status) {
-        repository.findById(taskId).ifPresent(task -> {
-            task.setStatus(status);
-            if (status == DownloadStatus.COMPLETED || status == DownloadStatus.FAILED) {
-                task.setCompletedAt(LocalDateTime.now());
+    private SegmentProgressDTO convertToSegmentDTO(TaskProgress.SegmentProgress segment) {
+        SegmentProgressDTO dto = new SegmentProgressDTO();
+        dto.setIndex(segment.index());
+        dto.setStartOffset(segment.startOffset());
+        dto.setEndOffset(segment.endOffset());
+        dto.setDownloadedBytes(segment.downloadedBytes());
+        dto.setSpeed(segment.speed());
+        dto.setActive(segment.active());
+        dto.setSource(segment.source());
+        return dto;
+    }
+
+    private ConnectionChangeDTO convertToConnectionChangeDTO(TaskProgress.ConnectionChange change) {
+        ConnectionChangeDTO dto = new ConnectionChangeDTO();
+        dto.setAt(LocalDateTime.ofInstant(change.at(), ZoneId.systemDefault()));
+        dto.setFromConnections(change.from());
+        dto.setToConnections(change.to());
+        dto.setSpeed(change.speed());
+        dto.setReason(change.reason());
+        return dto;
+    }
+
+    private double calculateProgress(long downloadedBytes, long fileSize) {
+        return fileSize > 0 ?
+                (double) downloadedBytes / fileSize * 100 : 0;
+    }
+
+    /**
+     * Hands the task to the engine once the surrounding transaction has committed, so its
+     * workers never read a row older than the status written here.
+     */
+    private void submitAfterCommit(DownloadTask task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            downloadEngine.submit(task);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                downloadEngine.submit(task);
             }
-            repository.save(task);
         });
     }
 }
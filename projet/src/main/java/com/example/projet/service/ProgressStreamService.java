@@ -0,0 +1,184 @@
+package com.example.projet.service;
+
+import com.example.projet.dto.DownloadFilterDTO;
+import com.example.projet.dto.DownloadProgressDTO;
+import com.example.projet.dto.ProgressDeltaDTO;
+import com.example.projet.exception.DownloadException;
+import com.example.projet.task.DownloadStatusChanged;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Server-Sent Events progress stream. Every {@code download.stream.interval-ms} the live state
+ * of the running tasks is read from memory and only the tasks whose progress changed are
+ * pushed, as {@code progress} deltas. Status changes are pushed as full {@code status} rows
+ * and deletions as {@code removed}.
+ * <p>
+ * Each subscriber keeps at most one pending event per task and per kind, drained by its own
+ * virtual thread: a slow client only ever receives the latest values, never a growing
+ * backlog, and cannot hold up the publisher or the other clients.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProgressStreamService {
+    private final DownloadService downloadService;
+
+    @Value("${download.stream.timeout-ms:0}")
+    private long timeoutMs;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<Long, ProgressDeltaDTO> lastPublished = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Opens a stream for one task, or for all tasks when {@code taskId} is null. The first
+     * event is the current state: one {@code status} row, or a {@code snapshot} of the first
+     * listing page (newest first).
+     */
+    public SseEmitter subscribe(Long taskId) throws DownloadException {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, taskId);
+        if (taskId != null) {
+            subscriber.offer("status", taskId, downloadService.getDownloadProgress(taskId));
+        } else {
+            subscriber.offer("snapshot", null, downloadService.getDownloads(new DownloadFilterDTO()).getItems());
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    @Scheduled(fixedRateString = "${download.stream.interval-ms:500}")
+    public void publish() {
+        if (subscribers.isEmpty()) {
+            lastPublished.clear();
+            return;
+        }
+        Set<Long> live = new HashSet<>();
+        for (ProgressDeltaDTO delta : downloadService.getLiveProgress()) {
+            live.add(delta.getId());
+            if (delta.equals(lastPublished.put(delta.getId(), delta))) {
+                continue;
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.wants(delta.getId())) {
+                    subscriber.offer("progress", delta.getId(), delta);
+                }
+            }
+        }
+        lastPublished.keySet().retainAll(live);
+    }
+
+    /** Runs after the commit of the transaction that changed the status, or at once outside one. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DownloadStatusChanged event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Long taskId = event.taskId();
+        DownloadProgressDTO row;
+        try {
+            row = downloadService.getDownloadProgress(taskId);
+        } catch (DownloadException e) {
+            row = null;
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.wants(taskId)) {
+                continue;
+            }
+            if (row != null) {
+                subscriber.offer("status", taskId, row);
+            } else {
+                subscriber.offer("removed", taskId, taskId);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    private record Event(String name, Object data) {
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Long taskId;
+
+        // Guarded by this subscriber; keyed by event name and task id, newest value wins
+        private final Map<String, Event> pending = new LinkedHashMap<>();
+        private boolean draining;
+
+        Subscriber(SseEmitter emitter, Long taskId) {
+            this.emitter = emitter;
+            this.taskId = taskId;
+        }
+
+        boolean wants(Long id) {
+            return taskId == null || Objects.equals(taskId, id);
+        }
+
+        void offer(String name, Long id, Object data) {
+            synchronized (this) {
+                if (!"progress".equals(name)) {
+                    // A status row or removal supersedes any progress still waiting for that task
+                    pending.remove("progress:" + id);
+                }
+                pending.put(name + ":" + id, new Event(name, data));
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                List<Event> batch;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    batch = new ArrayList<>(pending.values());
+                    pending.clear();
+                }
+                for (Event event : batch) {
+                    try {
+                        emitter.send(SseEmitter.event().name(event.name()).data(event.data()));
+                    } catch (IOException | IllegalStateException e) {
+                        log.debug("Progress stream subscriber gone: {}", e.getMessage());
+                        subscribers.remove(this);
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
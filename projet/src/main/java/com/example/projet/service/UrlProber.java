@@ -0,0 +1,215 @@
+package com.example.projet.service;
+
+import com.example.projet.task.DownloadMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpHead;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HEAD probes through the pooled client. When HEAD leaves the size or Range support open (no
+ * Accept-Ranges, no Content-Length) or is refused, a one-byte range GET settles both: a 206
+ * carries the total length in its Content-Range, a 200 means ranges are ignored.
+ * <p> A batch is probed on virtual threads, at most
+ * {@code download.batch.probe-parallelism} requests in flight overall and
+ * {@code download.batch.probe-per-host} per host, so a large manifest neither hammers one
+ * origin nor takes every pooled connection away from running downloads.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class UrlProber {
+    private final CloseableHttpClient httpClient;
+    private final DownloadMetrics downloadMetrics;
+
+    @Value("${download.batch.probe-parallelism:32}")
+    private int parallelism;
+
+    @Value("${download.batch.probe-per-host:4}")
+    private int perHost;
+
+    /**
+     * Status code, length (-1 when unknown), cache validators and Range support ({@code null}
+     * when not established), or the reason the probe failed.
+     */
+    record Probe(int status, long contentLength, String etag, String lastModified, Boolean ranges, String error) {
+        static Probe failed(String error) {
+            return new Probe(-1, -1, null, null, null, error);
+        }
+
+        /** Whether size and Range support are both settled, so no range probe is needed. */
+        boolean isConclusive() {
+            return status == HttpStatus.SC_OK && ranges != null && (contentLength > 0 || !ranges);
+        }
+    }
+
+    /** Reads response headers only; the connection goes back to the pool right away. */
+    Probe probe(URI uri) throws IOException {
+        long began = System.nanoTime();
+        try {
+            HttpHead head = new HttpHead(uri);
+            Probe probe = httpClient.execute(head, UrlProber::toProbe);
+            return probe.isConclusive() ? probe : probeRange(uri, probe);
+        } finally {
+            downloadMetrics.probe().record(System.nanoTime() - began, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * GET of the first byte only. A 206 proves Range support and gives the total length; a 200
+     * proves the opposite and its body is dropped unread. Any other answer leaves the HEAD
+     * result standing, without Range support.
+     */
+    private Probe probeRange(URI uri, Probe head) throws IOException {
+        HttpGet get = new HttpGet(uri);
+        get.setHeader(HttpHeaders.RANGE, "bytes=0-0");
+        ClassicHttpResponse response = httpClient.executeOpen(null, get, null);
+        Probe probe = toProbe(response);
+        String etag = probe.etag() != null ? probe.etag() : head.etag();
+        String lastModified = probe.lastModified() != null ? probe.lastModified() : head.lastModified();
+        if (response.getCode() == HttpStatus.SC_PARTIAL_CONTENT) {
+            try (response) {
+                EntityUtils.consume(response.getEntity());
+            }
+            long total = totalLength(response.getFirstHeader(HttpHeaders.CONTENT_RANGE));
+            return new Probe(HttpStatus.SC_OK, total >= 0 ? total : head.contentLength(), etag, lastModified,
+                    true, null);
+        }
+        discard(get, response);
+        if (response.getCode() == HttpStatus.SC_OK) {
+            return new Probe(HttpStatus.SC_OK, probe.contentLength(), etag, lastModified, false, null);
+        }
+        return head.status() == HttpStatus.SC_OK
+                ? new Probe(head.status(), head.contentLength(), etag, lastModified, false, null)
+                : probe;
+    }
+
+    /**
+     * Releases {@code response} without reading its body. A body, possibly the whole file, is
+     * dropped with its connection: {@code cancel()} discards the connection, and closing the
+     * response after that would try to drain the closed socket and fail.
+     */
+    private static void discard(HttpGet get, ClassicHttpResponse response) throws IOException {
+        if (response.getEntity() != null) {
+            get.cancel();
+        } else {
+            response.close();
+        }
+    }
+
+    /** The length after the slash of {@code Content-Range: bytes 0-0/<length>}, -1 if unknown. */
+    private static long totalLength(Header contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        String value = contentRange.getValue();
+        int slash = value.lastIndexOf('/');
+        try {
+            return slash >= 0 ? Long.parseLong(value.substring(slash + 1).trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Conditional GET for a cached copy: a 304 means the copy is current. On a 200 the body is
+     * not read: the connection is dropped and the headers serve as the probe of a fresh download.
+     */
+    Probe revalidate(URI uri, String etag, String lastModified) throws IOException {
+        HttpGet get = new HttpGet(uri);
+        if (etag != null) {
+            get.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        } else if (lastModified != null) {
+            get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        ClassicHttpResponse response = httpClient.executeOpen(null, get, null);
+        Probe probe = toProbe(response);
+        discard(get, response);
+        return probe;
+    }
+
+    private static Probe toProbe(HttpResponse response) {
+        Header contentLength = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+        long length = -1;
+        if (contentLength != null) {
+            try {
+                length = Long.parseLong(contentLength.getValue().trim());
+            } catch (NumberFormatException e) {
+                length = -1;
+            }
+        }
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        Header acceptRanges = response.getFirstHeader(HttpHeaders.ACCEPT_RANGES);
+        Boolean ranges = acceptRanges == null ? null : "bytes".equalsIgnoreCase(acceptRanges.getValue().trim())
+                ? Boolean.TRUE : "none".equalsIgnoreCase(acceptRanges.getValue().trim()) ? Boolean.FALSE : null;
+        return new Probe(response.getCode(), length, etag != null ? etag.getValue() : null,
+                lastModified != null ? lastModified.getValue() : null, ranges, null);
+    }
+
+    /** Probes every URI concurrently; results are in input order and never throw. */
+    List<Probe> probeAll(List<URI> uris) {
+        Semaphore global = new Semaphore(Math.max(1, parallelism));
+        Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+        List<Future<Probe>> futures = new ArrayList<>(uris.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (URI uri : uris) {
+                Semaphore host = hosts.computeIfAbsent(String.valueOf(uri.getHost()).toLowerCase(),
+                        h -> new Semaphore(Math.max(1, perHost)));
+                futures.add(executor.submit(() -> probeBounded(uri, host, global)));
+            }
+        }
+        List<Probe> probes = new ArrayList<>(futures.size());
+        for (Future<Probe> future : futures) {
+            try {
+                probes.add(future.get());
+            } catch (ExecutionException e) {
+                probes.add(Probe.failed(e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                probes.add(Probe.failed("Interrupted"));
+            }
+        }
+        return probes;
+    }
+
+    // The host permit is taken first so a slow host never holds global permits while it waits
+    private Probe probeBounded(URI uri, Semaphore host, Semaphore global) throws InterruptedException {
+        host.acquire();
+        try {
+            global.acquire();
+            try {
+                return probe(uri);
+            } catch (IOException e) {
+                log.debug("HEAD probe failed for {}: {}", uri, e.getMessage());
+                return Probe.failed(e.getMessage());
+            } finally {
+                global.release();
+            }
+        } finally {
+            host.release();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadPriority;
+import io.micrometer.core.instrument.Counter;
+
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runtime state of one task inside the {@link DownloadEngine}, from the moment it is queued
+ * until its last worker hands it to {@link DownloadTaskExecutor#finish}.
+ */
+final class ActiveDownload {
+    final DownloadTask task;
+    final Long taskId;
+    final String host;
+    /** Hosts of the URL and of its mirrors, the URL's first. */
+    final List<String> hosts;
+    final boolean adaptive;
+    /** The origin honours Range requests; without them a retry starts over from the first byte. */
+    final boolean ranged;
+    /** One unsplittable segment: the origin ignores Range requests or the length is unknown. */
+    final boolean singleStream;
+    /** Connection cap: numberOfThreads, or the {@link ConnectionController}'s current choice. */
+    volatile int maxConnections;
+    /** 429/503 responses since the {@link ConnectionController} last looked. */
+    final AtomicInteger throttled = new AtomicInteger();
+    /** Decisions of the {@link ConnectionController}, oldest first; guarded by itself. */
+    final Deque<TaskProgress.ConnectionChange> connectionHistory = new ArrayDeque<>();
+    final DownloadPriority priority;
+    /** First time the task was queued; kept across preemptions so it keeps its aging credit. */
+    final long queuedAtNanos;
+    /** Rate set by the {@link BandwidthLimiter}: the task's own limit or its fair share. */
+    final TokenBucket bandwidth = new TokenBucket();
+
+    volatile boolean paused;
+    volatile boolean cancelled;
+    /** Stopped by an application shutdown: checkpointed but left DOWNLOADING for recovery. */
+    volatile boolean suspended;
+    /** Asked by the engine to leave at the next segment boundary and go back to the queue. */
+    volatile boolean preempted;
+
+    // Set once by DownloadTaskExecutor#prepare on the first worker
+    URI uri;
+    Mirrors mirrors;
+    Path tempDir;
+    FileChannel target;
+    TaskProgress progress;
+    /** {@code download.bytes.received} of the task's host. */
+    Counter received;
+    /** MD5/SHA-256 state of the finished prefix, null for other tasks. */
+    IntegrityVerifier.PrefixDigest prefixDigest;
+    volatile SegmentScheduler scheduler;
+
+    // Written under the DownloadEngine lock; connections is also read for progress reports
+    volatile int connections;
+    boolean admitted;
+    volatile boolean finishing;
+
+    ActiveDownload(DownloadTask task, String host) {
+        this(task, host, System.nanoTime());
+    }
+
+    private ActiveDownload(DownloadTask task, String host, long queuedAtNanos) {
+        this.task = task;
+        this.taskId = task.getId();
+        this.host = host;
+        List<String> hosts = new ArrayList<>();
+        hosts.add(host);
+        for (String url : Mirrors.urls(task)) {
+            hosts.add(DownloadEngine.hostOf(url));
+        }
+        this.hosts = List.copyOf(hosts);
+        this.ranged = !Boolean.FALSE.equals(task.getRangeSupported());
+        this.singleStream = !ranged || task.getFileSize() < 0;
+        this.maxConnections = singleStream ? 1 : Math.max(1, task.getNumberOfThreads());
+        this.adaptive = Boolean.TRUE.equals(task.getAdaptiveConnections()) && !singleStream;
+        this.priority = task.getPriority() != null ? task.getPriority() : DownloadPriority.NORMAL;
+        this.queuedAtNanos = queuedAtNanos;
+    }
+
+    /** Fresh runtime state for a preempted task going back to the queue. */
+    ActiveDownload requeued() {
+        return new ActiveDownload(task, host, queuedAtNanos);
+    }
+
+    /**
+     * Priority used to order the queue: the task's own level plus one per {@code agingNanos}
+     * spent waiting since it was first queued.
+     */
+    int effectivePriority(long now, long agingNanos) {
+        long aged = agingNanos > 0 ? (now - queuedAtNanos) / agingNanos : 0;
+        return (int) Math.min(priority.ordinal() + aged, Integer.MAX_VALUE);
+    }
+
+    /** URI the current attempt at {@code segment} goes to: its chosen source, or the task URL. */
+    URI sourceOf(Segment segment) {
+        Mirrors.Mirror source = segment.source;
+        return source != null ? source.uri : uri;
+    }
+
+    boolean isStopped() {
+        return paused || cancelled || suspended;
+    }
+
+    boolean isPrepared() {
+        return scheduler != null;
+    }
+
+    /** Whether one more connection would find something to do. */
+    boolean wantsConnection() {
+        return isPrepared() && !isStopped() && !preempted && connections < maxConnections && scheduler.hasWork();
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.projet.task;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Engine on the HttpClient 5 async client: response bodies are copied by the I/O reactor
+ * threads into pooled direct buffers and written positionally into the target as each buffer
+ * fills, so no worker thread touches the payload. The worker still waits for the outcome of
+ * its exchange: with {@code download.execution-mode=VIRTUAL} that parks a virtual thread and a
+ * handful of reactor threads serve every open segment, while with PLATFORM every open segment
+ * keeps holding a pool thread.
+ * <p>
+ * Reactor threads must never sleep, so the {@link BandwidthLimiter} paces this engine through
+ * the connection's read window: every flushed buffer is reserved in the limiter, and the next
+ * window is granted only once the wait it returned has passed. Until then the reactor stops
+ * reading the socket and TCP flow control slows the origin down.
+ */
+@Component
+@ConditionalOnProperty(name = "download.transfer-engine", havingValue = "ASYNC")
+class AsyncTransferEngine implements TransferEngine {
+    private static final long STOP_POLL_MILLIS = 500;
+
+    private final CloseableHttpAsyncClient httpAsyncClient;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final DirectBufferPool buffers;
+    private final int window;
+    private final DownloadMetrics downloadMetrics;
+
+    AsyncTransferEngine(CloseableHttpAsyncClient httpAsyncClient, BandwidthLimiter bandwidthLimiter,
+                        DownloadMetrics downloadMetrics,
+                        @Value("${download.async.buffer-size:65536}") int bufferSize,
+                        @Value("${download.segment.min-split-size:1048576}") long minSplitSize,
+                        @Value("${download.connections.max-total:64}") int maxTotalConnections) {
+        this.httpAsyncClient = httpAsyncClient;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.downloadMetrics = downloadMetrics;
+        // A split always leaves at least minSplitSize past the confirmed position, so a buffer
+        // no larger than that can never hold bytes beyond a segment's shrunk end
+        int size = (int) Math.max(4096, Math.min(bufferSize, minSplitSize));
+        this.buffers = new DirectBufferPool(size, Math.max(1, maxTotalConnections));
+        this.window = size;
+    }
+
+    @Override
+    public void transfer(ActiveDownload download, FileChannel channel, long channelOffset,
+                         Segment segment) throws IOException {
+        long requestedEnd = segment.end;
+        AsyncRequestBuilder builder = AsyncRequestBuilder.get(download.sourceOf(segment))
+                .addHeader(HttpHeaders.ACCEPT, "*/*");
+        String range = RangeResponses.rangeHeader(download, segment, requestedEnd);
+        if (range != null) {
+            builder.addHeader(HttpHeaders.RANGE, range);
+        }
+        AsyncRequestProducer request = builder.build();
+        RangeConsumer consumer = new RangeConsumer(download, channel, channelOffset, segment, requestedEnd);
+        Future<Void> exchange = httpAsyncClient.execute(request, consumer, new FutureCallback<Void>() {
+            @Override
+            public void completed(Void result) {
+                consumer.outcome.complete(null);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                consumer.outcome.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                consumer.outcome.cancel(false);
+            }
+        });
+        try {
+            awaitOutcome(download, consumer.outcome, segment);
+        } finally {
+            // No write happens after close(); an exchange still open here was stopped or its
+            // tail was handed to another worker, so drop the connection instead of draining it
+            consumer.close();
+            if (!exchange.isDone()) {
+                exchange.cancel(true);
+            }
+        }
+        RangeResponses.checkComplete(download, segment);
+    }
+
+    /** Waits for the exchange, giving up early if the task is stopped while the origin stalls. */
+    private void awaitOutcome(ActiveDownload download, CompletableFuture<Void> outcome,
+                              Segment segment) throws IOException {
+        while (true) {
+            try {
+                outcome.get(STOP_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                if (download.isStopped()) {
+                    return;
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause.getMessage(), cause);
+            } catch (CancellationException e) {
+                throw new IOException("Range request cancelled at offset " + segment.position());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for range at offset "
+                        + segment.position());
+            }
+        }
+    }
+
+    /**
+     * Collects body data on the reactor thread into one pooled direct buffer and writes it at
+     * the segment's current position whenever it fills. {@code done} is only bumped after the
+     * bytes are written, so checkpoints never claim data still in the buffer. The read window is
+     * granted one buffer at a time, once the bandwidth reserved for earlier buffers is due.
+     */
+    private final class RangeConsumer implements AsyncResponseConsumer<Void> {
+        final CompletableFuture<Void> outcome = new CompletableFuture<>();
+
+        private final ActiveDownload download;
+        private final FileChannel channel;
+        private final long channelOffset;
+        private final Segment segment;
+        private final long requestedEnd;
+        private final long sentNanos = System.nanoTime();
+        private volatile FutureCallback<Void> resultCallback;
+
+        // Guarded by this consumer
+        private ByteBuffer buffer;
+        private boolean closed;
+        private long resumeAtNanos = sentNanos;
+
+        RangeConsumer(ActiveDownload download, FileChannel channel, long channelOffset, Segment segment,
+                      long requestedEnd) {
+            this.download = download;
+            this.channel = channel;
+            this.channelOffset = channelOffset;
+            this.segment = segment;
+            this.requestedEnd = requestedEnd;
+        }
+
+        @Override
+        public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context,
+                                    FutureCallback<Void> resultCallback) throws HttpException, IOException {
+            downloadMetrics.timeToFirstByte.record(System.nanoTime() - sentNanos, TimeUnit.NANOSECONDS);
+            RangeResponses.checkStatus(download, response, segment, requestedEnd);
+            this.resultCallback = resultCallback;
+            if (entityDetails == null) {
+                resultCallback.completed(null);
+            }
+        }
+
+        @Override
+        public void informationResponse(HttpResponse response, HttpContext context) {
+        }
+
+        /** Called by the reactor once the previous window is used up; never blocks it. */
+        @Override
+        public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+            long delay;
+            synchronized (this) {
+                delay = resumeAtNanos - System.nanoTime();
+            }
+            if (delay <= 0) {
+                capacityChannel.update(window);
+                return;
+            }
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                try {
+                    capacityChannel.update(window);
+                } catch (IOException e) {
+                    outcome.completeExceptionally(e);
+                }
+            });
+        }
+
+        @Override
+        public void consume(ByteBuffer src) throws IOException {
+            data(src, false);
+        }
+
+        @Override
+        public void streamEnd(List<? extends Header> trailers) throws IOException {
+            data(ByteBuffer.allocate(0), true);
+            resultCallback.completed(null);
+        }
+
+        @Override
+        public void failed(Exception cause) {
+        }
+
+        private synchronized void data(ByteBuffer src, boolean endOfStream) throws IOException {
+            if (closed) {
+                src.position(src.limit());
+                return;
+            }
+            if (buffer == null) {
+                buffer = buffers.acquire();
+            }
+            while (src.hasRemaining() && !closed) {
+                if (download.isStopped()) {
+                    flush();
+                    finishEarly();
+                    return;
+                }
+                int limit = src.limit();
+                src.limit(src.position() + Math.min(src.remaining(), buffer.remaining()));
+                buffer.put(src);
+                src.limit(limit);
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+            }
+            if (endOfStream && !closed) {
+                flush();
+            }
+            src.position(src.limit());
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            long remaining = segment.remaining();
+            if (buffer.remaining() > remaining) {
+                buffer.limit((int) remaining);
+            }
+            int written = DownloadFiles.writeFully(channel, buffer, channelOffset + segment.done.get());
+            segment.advance(buffer, written);
+            download.progress.add(written);
+            download.received.increment(written);
+            buffer.clear();
+            if (written > 0) {
+                long wait = bandwidthLimiter.reserve(download, written);
+                resumeAtNanos = Math.max(resumeAtNanos, System.nanoTime() + wait);
+            }
+            if (written == remaining) {
+                closed = true;
+                if (segment.end < requestedEnd) {
+                    finishEarly();
+                }
+            }
+        }
+
+        private void finishEarly() {
+            closed = true;
+            outcome.complete(null);
+        }
+
+        /** Called by the worker once it stops waiting; later data is discarded. */
+        synchronized void close() {
+            closed = true;
+            releaseBuffer();
+        }
+
+        @Override
+        public synchronized void releaseResources() {
+            closed = true;
+            releaseBuffer();
+        }
+
+        private void releaseBuffer() {
+            if (buffer != null) {
+                buffers.release(buffer);
+                buffer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.projet.task;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical bandwidth shaping: a global bucket, optional per-host buckets and one bucket per
+ * running task. After every read a worker reserves the bytes in all three and sleeps for the
+ * longest wait, so the tightest limit wins and no lock is taken on the read path. The async
+ * engine, whose reactor threads must not sleep, holds back the connection's read window for
+ * that long instead.
+ * <p>
+ * With a global limit the task buckets also carry each task's fair share, recomputed by max-min
+ * water-filling every {@code download.bandwidth.rebalance-interval-ms}: a task running well
+ * below its share (held back by its origin, host or own limit) is capped just above its
+ * measured rate and the rest is split between the others. Limits are in bytes per second,
+ * 0 meaning unlimited.
+ */
+@Component
+public class BandwidthLimiter {
+    private static final double CONSTRAINED = 0.8;
+    private static final double HEADROOM = 1.25;
+
+    private final ProgressRegistry progressRegistry;
+    private final TokenBucket global = new TokenBucket();
+    private final Map<String, TokenBucket> hosts = new ConcurrentHashMap<>();
+    private final Map<Long, Long> taskLimits = new ConcurrentHashMap<>();
+
+    public BandwidthLimiter(ProgressRegistry progressRegistry,
+                            @Value("${download.bandwidth.global-bytes-per-second:0}") long globalLimit) {
+        this.progressRegistry = progressRegistry;
+        this.global.setRate(globalLimit);
+    }
+
+    /** Called by a worker after it has written {@code bytes}; sleeps as long as the limits require. */
+    void acquire(ActiveDownload download, long bytes) {
+        long wait = reserve(download, bytes);
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Reserves {@code bytes} in every bucket that applies to {@code download} and returns how
+     * many nanoseconds the transfer must pause before reading more. Never sleeps.
+     */
+    long reserve(ActiveDownload download, long bytes) {
+        long now = System.nanoTime();
+        long wait = global.reserve(bytes, now);
+        TokenBucket host = hosts.get(download.host);
+        if (host != null) {
+            wait = Math.max(wait, host.reserve(bytes, now));
+        }
+        return Math.max(wait, download.bandwidth.reserve(bytes, now));
+    }
+
+    public long getGlobalLimit() {
+        return global.getRate();
+    }
+
+    public void setGlobalLimit(long bytesPerSecond) {
+        global.setRate(bytesPerSecond);
+        rebalance();
+    }
+
+    public Map<String, Long> getHostLimits() {
+        Map<String, Long> limits = new TreeMap<>();
+        hosts.forEach((host, bucket) -> limits.put(host, bucket.getRate()));
+        return limits;
+    }
+
+    public void setHostLimit(String host, long bytesPerSecond) {
+        String key = host.toLowerCase();
+        if (bytesPerSecond <= 0) {
+            hosts.remove(key);
+        } else {
+            hosts.computeIfAbsent(key, h -> new TokenBucket()).setRate(bytesPerSecond);
+        }
+    }
+
+    public Map<Long, Long> getTaskLimits() {
+        return new TreeMap<>(taskLimits);
+    }
+
+    public void setTaskLimit(Long taskId, long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            taskLimits.remove(taskId);
+        } else {
+            taskLimits.put(taskId, bytesPerSecond);
+        }
+        rebalance();
+    }
+
+    public void removeTask(Long taskId) {
+        taskLimits.remove(taskId);
+    }
+
+    /** Recomputes every running task's bucket rate from its own limit and its fair share. */
+    @Scheduled(fixedRateString = "${download.bandwidth.rebalance-interval-ms:500}")
+    public synchronized void rebalance() {
+        List<TaskShare> shares = new ArrayList<>();
+        for (TaskProgress progress : progressRegistry.active()) {
+            ActiveDownload download = progress.download();
+            long own = taskLimits.getOrDefault(download.taskId, 0L);
+            double cap = own > 0 ? own : Double.POSITIVE_INFINITY;
+            long previous = download.bandwidth.getRate();
+            double rate = progress.getDownloadSpeed();
+            if (previous > 0 && rate < CONSTRAINED * previous) {
+                // Not using its share: leave some room to grow, hand the rest to the others
+                cap = Math.min(cap, Math.max(rate * HEADROOM, 64 * 1024));
+            }
+            shares.add(new TaskShare(download, own, cap));
+        }
+
+        long total = global.getRate();
+        if (total <= 0) {
+            shares.forEach(share -> share.download().bandwidth.setRate(share.ownLimit()));
+            return;
+        }
+        shares.sort(Comparator.comparingDouble(TaskShare::cap));
+        double remaining = total;
+        int left = shares.size();
+        for (TaskShare share : shares) {
+            double granted = Math.min(share.cap(), remaining / left);
+            share.download().bandwidth.setRate(Math.max(1, (long) granted));
+            remaining -= granted;
+            left--;
+        }
+    }
+
+    private record TaskShare(ActiveDownload download, long ownLimit, double cap) {
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.projet.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default engine: the worker thread reads the body from the pooled classic client through a
+ * {@code download.blocking.buffer-size} buffer (8 KB by default), writes it positionally and is
+ * paced by the {@link BandwidthLimiter}.
+ */
+@Component
+@ConditionalOnProperty(name = "download.transfer-engine", havingValue = "BLOCKING", matchIfMissing = true)
+@Slf4j
+class BlockingTransferEngine implements TransferEngine {
+    private final CloseableHttpClient httpClient;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final DownloadMetrics downloadMetrics;
+    private final int bufferSize;
+
+    BlockingTransferEngine(CloseableHttpClient httpClient, BandwidthLimiter bandwidthLimiter,
+                           DownloadMetrics downloadMetrics,
+                           @Value("${download.blocking.buffer-size:8192}") int bufferSize) {
+        this.httpClient = httpClient;
+        this.bandwidthLimiter = bandwidthLimiter;
+        this.downloadMetrics = downloadMetrics;
+        this.bufferSize = Math.max(1024, bufferSize);
+    }
+
+    /**
+     * The end is re-read before every write because the scheduler may hand the tail to another
+     * worker; the connection is dropped as soon as the shrunk end is reached.
+     */
+    @Override
+    public void transfer(ActiveDownload download, FileChannel channel, long channelOffset,
+                         Segment segment) throws IOException {
+        long requestedEnd = segment.end;
+        HttpGet request = createRangeRequest(download.sourceOf(segment), RangeResponses.rangeHeader(download, segment, requestedEnd));
+        ClassicHttpResponse response = null;
+        try {
+            long sent = System.nanoTime();
+            response = httpClient.executeOpen(null, request, null);
+            downloadMetrics.timeToFirstByte.record(System.nanoTime() - sent, TimeUnit.NANOSECONDS);
+            RangeResponses.checkStatus(download, response, segment, requestedEnd);
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                throw new ProtocolException("Empty response body for range at offset " + segment.position());
+            }
+
+            try (InputStream inputStream = entity.getContent()) {
+                byte[] buffer = new byte[bufferSize];
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                int bytesRead;
+
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    if (download.isStopped()) {
+                        break;
+                    }
+
+                    long remaining = segment.remaining();
+                    int toWrite = (int) Math.min(bytesRead, remaining);
+                    byteBuffer.clear().limit(toWrite);
+                    DownloadFiles.writeFully(channel, byteBuffer, channelOffset + segment.done.get());
+                    segment.advance(byteBuffer, toWrite);
+                    download.progress.add(toWrite);
+                    download.received.increment(toWrite);
+                    bandwidthLimiter.acquire(download, toWrite);
+
+                    if (toWrite == remaining) {
+                        break;
+                    }
+                }
+                // Stopping early or after the tail was handed to another worker: drop the
+                // connection instead of letting close() drain the rest of the range
+                if (download.isStopped() || segment.end < requestedEnd) {
+                    request.cancel();
+                }
+            }
+            RangeResponses.checkComplete(download, segment);
+        } finally {
+            closeQuietly(response);
+        }
+    }
+
+    private HttpGet createRangeRequest(URI uri, String range) {
+        HttpGet request = new HttpGet(uri);
+        if (range != null) {
+            request.setHeader(HttpHeaders.RANGE, range);
+        }
+        request.setHeader(HttpHeaders.ACCEPT, "*/*");
+        return request;
+    }
+
+    private void closeQuietly(ClassicHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            response.close();
+        } catch (IOException e) {
+            log.debug("Error closing response: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.projet.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AIMD connection count for tasks started with {@code adaptiveConnections}. Every
+ * {@code download.adaptive.interval-ms} the controller compares the task's smoothed throughput
+ * with the previous round: while it grows by more than {@code download.adaptive.min-gain} one
+ * connection is added, up to {@code download.adaptive.max-connections}. A 429/503 response
+ * halves the count and a throughput drop undoes the last increase. On a plateau the count is
+ * held, with another increase tried every few rounds in case the origin or path has changed.
+ * <p>
+ * The count that gave the best throughput is remembered per host and is the starting point of
+ * the next adaptive task on that host. Extra connections come from the engine as usual; a
+ * lower limit is applied as workers reach their next segment boundary.
+ */
+@Component
+@Slf4j
+class ConnectionController {
+    private static final int HISTORY_SIZE = 20;
+    private static final int PROBE_AFTER_HOLDS = 5;
+
+    private final ProgressRegistry progressRegistry;
+    private final int maxConnections;
+    private final double minGain;
+
+    private final Map<String, Integer> bestByHost = new ConcurrentHashMap<>();
+    // Only touched by the scheduler thread
+    private final Map<Long, State> states = new HashMap<>();
+
+    ConnectionController(ProgressRegistry progressRegistry,
+                         @Value("${download.adaptive.max-connections:32}") int maxConnections,
+                         @Value("${download.adaptive.min-gain:0.05}") double minGain) {
+        this.progressRegistry = progressRegistry;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.minGain = Math.max(0, minGain);
+    }
+
+    private static final class State {
+        double previousRate;
+        boolean lastWasIncrease;
+        int holds;
+        double bestRate;
+    }
+
+    /** Sets the starting limit of an adaptive task: the host's best known count, if any. */
+    void start(ActiveDownload download) {
+        if (!download.adaptive) {
+            return;
+        }
+        Integer best = bestByHost.get(download.host);
+        int initial = Math.min(maxConnections, best != null ? best : download.maxConnections);
+        change(download, initial, 0, best != null ? "HOST_BEST" : "INITIAL");
+    }
+
+    @Scheduled(fixedDelayString = "${download.adaptive.interval-ms:3000}")
+    void adjust() {
+        Set<Long> seen = new HashSet<>();
+        for (TaskProgress progress : progressRegistry.active()) {
+            ActiveDownload download = progress.download();
+            if (!download.adaptive || download.finishing || download.isStopped()) {
+                continue;
+            }
+            seen.add(download.taskId);
+            adjust(download, states.computeIfAbsent(download.taskId, id -> new State()),
+                    progress.getDownloadSpeed());
+        }
+        states.keySet().retainAll(seen);
+    }
+
+    private void adjust(ActiveDownload download, State state, double rate) {
+        int limit = download.maxConnections;
+        if (download.throttled.getAndSet(0) > 0) {
+            int reduced = Math.max(1, limit / 2);
+            bestByHost.merge(download.host, reduced, Math::min);
+            change(download, reduced, rate, "THROTTLED");
+            state.previousRate = 0;
+            state.lastWasIncrease = false;
+            return;
+        }
+        if (rate <= 0) {
+            return;
+        }
+        if (download.connections < limit) {
+            // Held below the limit by the engine's caps or by a lack of work: nothing to learn
+            state.previousRate = rate;
+            state.lastWasIncrease = false;
+            return;
+        }
+        if (rate > state.bestRate) {
+            state.bestRate = rate;
+            bestByHost.put(download.host, limit);
+        }
+
+        if (state.previousRate > 0 && rate < state.previousRate * (1 - minGain)) {
+            int reduced = Math.max(1, state.lastWasIncrease ? limit - 1 : limit * 3 / 4);
+            if (reduced != limit) {
+                change(download, reduced, rate, "THROUGHPUT_DROP");
+            }
+            state.lastWasIncrease = false;
+            state.holds = 0;
+        } else if (limit < maxConnections && (state.previousRate == 0
+                || rate > state.previousRate * (1 + minGain) || ++state.holds >= PROBE_AFTER_HOLDS)) {
+            change(download, limit + 1, rate, state.holds >= PROBE_AFTER_HOLDS ? "PROBE" : "THROUGHPUT_GAIN");
+            state.lastWasIncrease = true;
+            state.holds = 0;
+        } else {
+            state.lastWasIncrease = false;
+        }
+        state.previousRate = rate;
+    }
+
+    private void change(ActiveDownload download, int limit, double rate, String reason) {
+        int from = download.maxConnections;
+        download.maxConnections = limit;
+        synchronized (download.connectionHistory) {
+            if (download.connectionHistory.size() == HISTORY_SIZE) {
+                download.connectionHistory.removeFirst();
+            }
+            download.connectionHistory.addLast(new TaskProgress.ConnectionChange(Instant.now(), from, limit, rate, reason));
+        }
+        log.debug("Task {} connections {} -> {} ({}, {} B/s)", download.taskId, from, limit, reason, (long) rate);
+    }
+}
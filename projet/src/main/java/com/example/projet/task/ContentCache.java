@@ -0,0 +1,298 @@
+package com.example.projet.task;
+
+import com.example.projet.model.CacheEntry;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.repository.CacheEntryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local cache of finished downloads, keyed by URL (with the ETag/Last-Modified it was fetched
+ * with) and by the SHA-256 of the content. Blobs live under {@code download.cache.location} and
+ * are named by their hash, so identical content behind several URLs is stored once.
+ * <p>
+ * A completed download is hardlinked into the cache (copied when the cache is on another file
+ * system) and a hit is hardlinked back into {@code file.storage.location}. Both therefore share
+ * the inode: a file edited in place also changes the cached copy. Blobs are evicted least
+ * recently used first once they exceed {@code download.cache.max-bytes}.
+ * <p>
+ * The index is kept in memory, in access order, and written through to the database so it
+ * survives a restart. Hits, misses and bytes served without the network are published as
+ * {@code download.cache.*} metrics.
+ */
+@Component
+@Slf4j
+public class ContentCache {
+    private final CacheEntryRepository repository;
+    private final boolean enabled;
+    private final Path location;
+    private final long maxBytes;
+
+    // Guarded by this; entries by URL in access order, blob sizes and reference counts by hash
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Blob> blobs = new HashMap<>();
+    private long totalBytes;
+
+    private final ExecutorService storer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ContentCacheStorer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+
+    private static final class Blob {
+        final long size;
+        int references;
+
+        Blob(long size) {
+            this.size = size;
+        }
+    }
+
+    public ContentCache(CacheEntryRepository repository, MeterRegistry meterRegistry,
+                        @Value("${download.cache.enabled:false}") boolean enabled,
+                        @Value("${download.cache.location:${file.storage.location}/.cache}") String location,
+                        @Value("${download.cache.max-bytes:10737418240}") long maxBytes) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.location = Paths.get(location);
+        this.maxBytes = maxBytes;
+        this.hits = Counter.builder("download.cache.requests").tag("result", "hit")
+                .description("Downloads answered from the content cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("download.cache.requests").tag("result", "miss")
+                .description("Downloads that had to be fetched")
+                .register(meterRegistry);
+        this.bytesSaved = Counter.builder("download.cache.saved").baseUnit("bytes")
+                .description("Bytes served from the cache instead of the network")
+                .register(meterRegistry);
+        Gauge.builder("download.cache.hit.ratio", this, ContentCache::hitRatio)
+                .description("Share of cacheable requests answered from the cache")
+                .register(meterRegistry);
+        Gauge.builder("download.cache.size", this, ContentCache::size).baseUnit("bytes")
+                .description("Bytes held by cached blobs")
+                .register(meterRegistry);
+    }
+
+    /** Loads the index, dropping entries whose blob has disappeared. */
+    @PostConstruct
+    void load() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(location);
+        synchronized (this) {
+            for (CacheEntry entry : repository.findAllByOrderByLastAccessAt()) {
+                if (!Files.exists(blobPath(entry.getContentHash()))) {
+                    repository.delete(entry);
+                    continue;
+                }
+                entries.put(entry.getUrl(), entry);
+                reference(entry);
+            }
+        }
+        log.info("Content cache at {}: {} entries, {} bytes", location, entries.size(), totalBytes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        storer.shutdown();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** The cached entry of {@code url}, if any; its validators are needed to revalidate it. */
+    public synchronized CacheEntry lookup(String url) {
+        return enabled ? entries.get(url) : null;
+    }
+
+    /** Whether a blob with this SHA-256 is cached. */
+    public synchronized boolean contains(String sha256) {
+        return enabled && blobs.containsKey(sha256.toLowerCase());
+    }
+
+    /**
+     * Hardlinks (or copies) the blob into {@code target} and counts a hit.
+     *
+     * @return the size of the content
+     */
+    public long materialize(String sha256, Path target) throws IOException {
+        String hash = sha256.toLowerCase();
+        DownloadFiles.linkOrCopy(blobPath(hash), target);
+        long size = Files.size(target);
+        hits.increment();
+        bytesSaved.increment(size);
+        return size;
+    }
+
+    /** Marks an entry as just used, moving it to the back of the eviction order. */
+    public void touch(CacheEntry entry) {
+        synchronized (this) {
+            entries.get(entry.getUrl());
+            entry.setLastAccessAt(LocalDateTime.now());
+        }
+        repository.save(entry);
+    }
+
+    public void recordMiss() {
+        if (enabled) {
+            misses.increment();
+        }
+    }
+
+    /**
+     * Adds a completed download to the cache in the background: hashes it (unless its SHA-256
+     * was already verified), links it in as a blob and evicts down to the budget.
+     *
+     * @param verifiedSha256 the checksum the download was verified against, or {@code null}
+     */
+    void store(DownloadTask task, String verifiedSha256) {
+        if (!enabled || task.getFileSize() > maxBytes) {
+            return;
+        }
+        storer.execute(() -> {
+            try {
+                storeNow(task, verifiedSha256);
+            } catch (Exception e) {
+                log.warn("Could not cache {}: {}", task.getUrl(), e.getMessage());
+            }
+        });
+    }
+
+    private void storeNow(DownloadTask task, String verifiedSha256) throws IOException {
+        Path file = Paths.get(task.getFilePath());
+        String hash = verifiedSha256 != null ? verifiedSha256.toLowerCase() : sha256(file);
+        Path blob = blobPath(hash);
+        if (!Files.exists(blob)) {
+            Files.createDirectories(blob.getParent());
+            Path staging = blob.resolveSibling(hash + ".tmp");
+            DownloadFiles.linkOrCopy(file, staging);
+            Files.move(staging, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        CacheEntry entry;
+        String replaced = null;
+        synchronized (this) {
+            entry = entries.get(task.getUrl());
+            if (entry == null) {
+                entry = new CacheEntry();
+                entry.setUrl(task.getUrl());
+                entry.setCreatedAt(LocalDateTime.now());
+            } else if (release(entry) && !entry.getContentHash().equals(hash)) {
+                // The URL now serves other content and nothing else references the old blob
+                replaced = entry.getContentHash();
+            }
+            entry.setEtag(task.getEtag());
+            entry.setLastModified(task.getLastModified());
+            entry.setContentHash(hash);
+            entry.setSize(Files.size(blob));
+            entry.setLastAccessAt(LocalDateTime.now());
+            entries.put(entry.getUrl(), entry);
+            reference(entry);
+        }
+        repository.save(entry);
+        if (replaced != null) {
+            Files.deleteIfExists(blobPath(replaced));
+        }
+        evict();
+    }
+
+    /** Drops least recently used entries, and blobs nobody references, until within budget. */
+    private void evict() throws IOException {
+        while (true) {
+            CacheEntry victim;
+            synchronized (this) {
+                if (totalBytes <= maxBytes || entries.isEmpty()) {
+                    return;
+                }
+                Iterator<CacheEntry> eldest = entries.values().iterator();
+                victim = eldest.next();
+                eldest.remove();
+                if (!release(victim)) {
+                    victim = null;
+                }
+            }
+            if (victim != null) {
+                Files.deleteIfExists(blobPath(victim.getContentHash()));
+            }
+        }
+    }
+
+    // Called under the lock
+    private void reference(CacheEntry entry) {
+        Blob blob = blobs.computeIfAbsent(entry.getContentHash(), h -> {
+            totalBytes += entry.getSize();
+            return new Blob(entry.getSize());
+        });
+        blob.references++;
+    }
+
+    // Called under the lock; deletes the entry row and returns whether its blob became unused
+    private boolean release(CacheEntry entry) {
+        if (entry.getId() != null) {
+            repository.deleteById(entry.getId());
+            entry.setId(null);
+        }
+        Blob blob = blobs.get(entry.getContentHash());
+        if (blob == null || --blob.references > 0) {
+            return false;
+        }
+        blobs.remove(entry.getContentHash());
+        totalBytes -= blob.size;
+        return true;
+    }
+
+    private Path blobPath(String hash) {
+        return location.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private synchronized double size() {
+        return totalBytes;
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), MessageDigest.getInstance("SHA-256"))) {
+            byte[] buffer = new byte[1 << 16];
+            while (in.read(buffer) != -1) {
+                // DigestInputStream hashes as it reads
+            }
+            return HexFormat.of().formatHex(((DigestInputStream) in).getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.projet.task;
+
+/**
+ * CRC32C arithmetic that {@link java.util.zip.CRC32C} does not offer: combining the checksums of
+ * two adjacent byte ranges without reading them again (zlib's {@code crc32_combine} over the
+ * Castagnoli polynomial).
+ */
+final class Crc32c {
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private Crc32c() {
+    }
+
+    /** CRC32C of {@code A + B}, given {@code crc1 = crc(A)}, {@code crc2 = crc(B)} and the length of B. */
+    static int combine(int crc1, int crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        int[] even = new int[32];
+        int[] odd = new int[32];
+
+        // Operator for one zero bit, then squared to two and four zero bits
+        odd[0] = POLYNOMIAL;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);
+        square(odd, even);
+
+        // Apply length2 zero bytes to crc1, one bit of length2 per squaring
+        do {
+            square(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            length2 >>>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            length2 >>>= 1;
+        } while (length2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    static String toHex(int crc) {
+        return String.format("%08x", crc);
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
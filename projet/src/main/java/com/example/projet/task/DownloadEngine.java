@@ -0,0 +1,527 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadTask;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Single download engine shared by all tasks. Every running segment worker holds one connection
+ * slot; slots are capped globally ({@code download.connections.max-total}) and per host
+ * ({@code download.connections.max-per-host}), and workers run on one pool sized to the global
+ * cap, or on virtual threads with {@code download.execution-mode=VIRTUAL}. A task stays QUEUED
+ * until it gets its first slot. Extra slots are handed out round-robin up to a fair share of the
+ * global cap, and a worker above its task's fair share gives its slot back at the next segment
+ * boundary while other tasks wait.
+ * <p>
+ * Queued tasks are admitted by priority, at most {@code download.scheduler.max-active} at a
+ * time. A waiting task gains one priority level per {@code download.scheduler.aging-ms}, so a
+ * steady stream of urgent work cannot starve bulk transfers forever. When a task is held back
+ * by the active limit or its host's cap, the lowest-priority running task below it is
+ * preempted: its workers leave at their next segment boundary and it goes back to the queue
+ * from its checkpoint.
+ * <p>
+ * A worker whose segments are all waiting out a retry delay gives its slot back; the task stays
+ * running without connections and a dispatch is scheduled for when the first retry is due.
+ * No slot is granted to a task while the {@link HostCircuitBreaker circuit} of its host, and of
+ * every one of its mirrors, is open. Slots of a task with mirrors count against its own host.
+ * <p>
+ * Queue length, running tasks and held slots are published as the
+ * {@code download.tasks.queued}, {@code download.tasks.active} and
+ * {@code download.connections.active} gauges.
+ */
+@Component
+@Slf4j
+public class DownloadEngine {
+    private final DownloadTaskExecutor taskExecutor;
+    private final HostCircuitBreaker circuitBreaker;
+    private final int maxTotalConnections;
+    private final int maxConnectionsPerHost;
+    private final int maxActive;
+    private final long agingNanos;
+    private final long shutdownGraceMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, ActiveDownload> queued = new LinkedHashMap<>();
+    private final Map<Long, ActiveDownload> running = new LinkedHashMap<>();
+    private final Map<String, Integer> hostConnections = new HashMap<>();
+    private int usedConnections;
+    private int preemptions;
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService dispatcher;
+
+    public DownloadEngine(DownloadTaskExecutor taskExecutor, HostCircuitBreaker circuitBreaker,
+                          MeterRegistry meterRegistry,
+                          @Value("${download.connections.max-total:64}") int maxTotalConnections,
+                          @Value("${download.connections.max-per-host:16}") int maxConnectionsPerHost,
+                          @Value("${download.checkpoint.interval-ms:2000}") long checkpointIntervalMs,
+                          @Value("${download.execution-mode:PLATFORM}") ExecutionMode executionMode,
+                          @Value("${download.shutdown.grace-ms:5000}") long shutdownGraceMs,
+                          @Value("${download.scheduler.max-active:0}") int maxActive,
+                          @Value("${download.scheduler.aging-ms:30000}") long agingMs) {
+        this.taskExecutor = taskExecutor;
+        this.circuitBreaker = circuitBreaker;
+        this.maxActive = maxActive > 0 ? maxActive : Integer.MAX_VALUE;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, agingMs));
+        this.shutdownGraceMs = shutdownGraceMs;
+        this.maxTotalConnections = Math.max(1, maxTotalConnections);
+        this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        this.workers = createWorkers(executionMode, this.maxTotalConnections);
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(new DownloadThreadFactory("DownloadDispatcher-"));
+        dispatcher.scheduleWithFixedDelay(this::dispatch, 500, 500, TimeUnit.MILLISECONDS);
+        dispatcher.scheduleWithFixedDelay(this::checkpointAll, checkpointIntervalMs, checkpointIntervalMs,
+                TimeUnit.MILLISECONDS);
+
+        Gauge.builder("download.tasks.queued", this, e -> e.locked(() -> e.queued.size()))
+                .description("Tasks waiting for a connection slot")
+                .register(meterRegistry);
+        Gauge.builder("download.tasks.active", this, e -> e.locked(() -> e.running.size()))
+                .description("Tasks admitted and transferring")
+                .register(meterRegistry);
+        Gauge.builder("download.connections.active", this, e -> e.locked(() -> e.usedConnections))
+                .description("Connection slots held by running tasks")
+                .register(meterRegistry);
+    }
+
+    private double locked(IntSupplier value) {
+        lock.lock();
+        try {
+            return value.getAsInt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ExecutorService createWorkers(ExecutionMode executionMode, int maxTotalConnections) {
+        if (executionMode == ExecutionMode.VIRTUAL) {
+            log.info("Download workers run on virtual threads (max {} connections)", maxTotalConnections);
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+                    .name("DownloadWorker-vt-", 1)
+                    .uncaughtExceptionHandler((t, e) ->
+                            log.error("Uncaught exception in download thread {}: {}", t.getName(), e.getMessage()))
+                    .factory());
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxTotalConnections, maxTotalConnections,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DownloadThreadFactory("DownloadWorker-"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Queues a task. It stays QUEUED until it is the highest-priority waiting task that fits the
+     * active limit and a connection slot is free for its host.
+     *
+     * @return {@code false} if the task is already queued or running
+     */
+    public boolean submit(DownloadTask task) {
+        lock.lock();
+        try {
+            if (running.containsKey(task.getId()) || queued.containsKey(task.getId())) {
+                return false;
+            }
+            queued.put(task.getId(), new ActiveDownload(task, hostOf(task.getUrl())));
+        } finally {
+            lock.unlock();
+        }
+        dispatcher.execute(this::dispatch);
+        return true;
+    }
+
+    /**
+     * Queues several tasks under one lock and dispatches once, so a large batch does not trigger
+     * one dispatch round per task.
+     *
+     * @return how many tasks were queued (tasks already queued or running are skipped)
+     */
+    public int submitAll(Collection<DownloadTask> tasks) {
+        int added = 0;
+        lock.lock();
+        try {
+            for (DownloadTask task : tasks) {
+                if (!running.containsKey(task.getId()) && !queued.containsKey(task.getId())) {
+                    queued.put(task.getId(), new ActiveDownload(task, hostOf(task.getUrl())));
+                    added++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (added > 0) {
+            dispatcher.execute(this::dispatch);
+        }
+        return added;
+    }
+
+    public void pause(Long taskId) {
+        stop(taskId, false);
+    }
+
+    public void cancel(Long taskId) {
+        stop(taskId, true);
+    }
+
+    public boolean isActive(Long taskId) {
+        lock.lock();
+        try {
+            return running.containsKey(taskId) || queued.containsKey(taskId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void stop(Long taskId, boolean cancel) {
+        ActiveDownload waiting = null;
+        lock.lock();
+        try {
+            ActiveDownload download = running.get(taskId);
+            if (download == null) {
+                download = queued.remove(taskId);
+                if (download == null) {
+                    return;
+                }
+                download.finishing = true;
+                waiting = download;
+            } else if (download.connections == 0 && !download.finishing) {
+                // Backing off with no worker left to notice the stop
+                download.finishing = true;
+                running.remove(taskId);
+                waiting = download;
+            }
+            if (cancel) {
+                download.cancelled = true;
+            } else {
+                download.paused = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (waiting != null) {
+            taskExecutor.finish(waiting, false);
+        }
+    }
+
+    /**
+     * Hands out free connection slots: first one slot to each queued task by effective priority
+     * (arrival order among equals) while the active limit allows, then extra slots round-robin
+     * to running tasks below their fair share. The best task left waiting may preempt a running
+     * one.
+     */
+    private void dispatch() {
+        List<ActiveDownload> granted = new ArrayList<>();
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            List<ActiveDownload> candidates = new ArrayList<>(queued.values());
+            candidates.sort(Comparator.comparingInt((ActiveDownload d) -> d.effectivePriority(now, agingNanos))
+                    .reversed()
+                    .thenComparingLong(d -> d.queuedAtNanos));
+            ActiveDownload blocked = null;
+            for (ActiveDownload download : candidates) {
+                if (usedConnections >= maxTotalConnections) {
+                    break;
+                }
+                if (circuitBreaker.isOpen(download.hosts)) {
+                    continue;
+                }
+                if (running.size() < maxActive && hasFreeSlot(download.host)) {
+                    queued.remove(download.taskId);
+                    download.admitted = true;
+                    running.put(download.taskId, download);
+                    acquireSlot(download);
+                    granted.add(download);
+                } else if (blocked == null) {
+                    blocked = download;
+                }
+            }
+            if (blocked != null) {
+                preemptFor(blocked);
+            }
+
+            boolean progress = true;
+            while (progress) {
+                progress = false;
+                int fairShare = fairShare();
+                for (ActiveDownload download : running.values()) {
+                    if (download.wantsConnection() && download.connections < fairShare
+                            && hasFreeSlot(download.host) && !circuitBreaker.isOpen(download.hosts)) {
+                        acquireSlot(download);
+                        granted.add(download);
+                        progress = true;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (ActiveDownload download : granted) {
+            workers.execute(() -> runWorker(download));
+        }
+    }
+
+    /**
+     * Marks the lowest-priority running task below {@code candidate} for preemption, if that
+     * would free what the candidate waits for: an active slot, or a connection to its host.
+     * Only one preemption is in flight at a time, so a burst of urgent tasks does not empty the
+     * engine before the first one is even admitted.
+     */
+    private void preemptFor(ActiveDownload candidate) {
+        if (preemptions > 0) {
+            return;
+        }
+        boolean activeLimited = running.size() >= maxActive;
+        ActiveDownload victim = null;
+        for (ActiveDownload download : running.values()) {
+            // A task backing off without workers holds no slot and has nobody to notice
+            if (download.finishing || download.preempted || download.isStopped() || download.connections == 0
+                    || download.priority.compareTo(candidate.priority) >= 0) {
+                continue;
+            }
+            if (!activeLimited && !download.host.equals(candidate.host)) {
+                continue;
+            }
+            if (victim == null || download.priority.compareTo(victim.priority) < 0
+                    || (download.priority == victim.priority && download.queuedAtNanos > victim.queuedAtNanos)) {
+                victim = download;
+            }
+        }
+        if (victim != null) {
+            victim.preempted = true;
+            preemptions++;
+            log.info("Preempting task {} ({}) for task {} ({})", victim.taskId, victim.priority,
+                    candidate.taskId, candidate.priority);
+        }
+    }
+
+    private void runWorker(ActiveDownload download) {
+        DownloadTaskExecutor.WorkerExit exit;
+        try {
+            if (!download.isPrepared()) {
+                taskExecutor.prepare(download);
+                dispatch();
+            }
+            exit = taskExecutor.runWorker(download, () -> yieldSlot(download));
+        } catch (Exception e) {
+            log.error("Download worker failed for task {}: {}", download.taskId, e.getMessage());
+            exit = DownloadTaskExecutor.WorkerExit.FAILED;
+        }
+
+        boolean last = false;
+        boolean idle = false;
+        if (exit != DownloadTaskExecutor.WorkerExit.YIELDED) {
+            lock.lock();
+            try {
+                releaseSlot(download);
+                if (exit == DownloadTaskExecutor.WorkerExit.BACKOFF) {
+                    // Stopped or preempted while backing off: this worker is the one to act on it
+                    if (download.preempted) {
+                        exit = DownloadTaskExecutor.WorkerExit.PREEMPTED;
+                    } else if (!download.isStopped()) {
+                        idle = true;
+                    }
+                }
+                if (download.connections == 0 && !download.finishing && !idle) {
+                    download.finishing = true;
+                    if (download.preempted) {
+                        preemptions--;
+                    }
+                    if (exit != DownloadTaskExecutor.WorkerExit.PREEMPTED) {
+                        running.remove(download.taskId);
+                    }
+                    last = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (last) {
+            if (exit == DownloadTaskExecutor.WorkerExit.PREEMPTED) {
+                requeue(download);
+            } else {
+                taskExecutor.finish(download, exit == DownloadTaskExecutor.WorkerExit.FAILED);
+            }
+        }
+        if (idle) {
+            scheduleRetry(download);
+        }
+        dispatch();
+    }
+
+    /**
+     * Schedules a dispatch for when the task's first backed-off segment is due, or the first
+     * circuit of its hosts turns half-open, so the retry does not wait for the next periodic round.
+     */
+    private void scheduleRetry(ActiveDownload download) {
+        long delay = Math.max(download.scheduler.retryDelayNanos(), circuitBreaker.remainingNanos(download.hosts));
+        try {
+            dispatcher.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: the task resumes from its checkpoint on the next start
+        }
+    }
+
+    /**
+     * Sends a preempted task back to the queue. It stays in {@code running} while its checkpoint
+     * is written, so a pause or cancel arriving meanwhile still finds it and is honoured here.
+     */
+    private void requeue(ActiveDownload download) {
+        taskExecutor.requeue(download);
+        boolean stopped;
+        lock.lock();
+        try {
+            running.remove(download.taskId);
+            stopped = download.isStopped();
+            if (!stopped) {
+                queued.put(download.taskId, download.requeued());
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (stopped) {
+            taskExecutor.finish(download, false);
+        }
+    }
+
+    /**
+     * Called by a worker between segments: gives the slot back if the task holds more than its
+     * fair share while other tasks are waiting for one, or more than its own (adaptive) limit.
+     */
+    private boolean yieldSlot(ActiveDownload download) {
+        lock.lock();
+        try {
+            if ((!queued.isEmpty() && download.connections > fairShare())
+                    || download.connections > download.maxConnections) {
+                releaseSlot(download);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkpointAll() {
+        List<ActiveDownload> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(running.values());
+        } finally {
+            lock.unlock();
+        }
+        for (ActiveDownload download : snapshot) {
+            if (download.isPrepared() && !download.finishing) {
+                taskExecutor.checkpoint(download);
+            }
+        }
+    }
+
+    private int fairShare() {
+        return Math.max(1, maxTotalConnections / Math.max(1, running.size() + queued.size()));
+    }
+
+    private boolean hasFreeSlot(String host) {
+        return usedConnections < maxTotalConnections
+                && hostConnections.getOrDefault(host, 0) < maxConnectionsPerHost;
+    }
+
+    private void acquireSlot(ActiveDownload download) {
+        usedConnections++;
+        hostConnections.merge(download.host, 1, Integer::sum);
+        download.connections++;
+    }
+
+    private void releaseSlot(ActiveDownload download) {
+        usedConnections--;
+        hostConnections.computeIfPresent(download.host, (host, count) -> count > 1 ? count - 1 : null);
+        download.connections--;
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host.toLowerCase() : "";
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Suspends running tasks and gives their workers {@code download.shutdown.grace-ms} to leave,
+     * so the last worker of each task writes a final checkpoint. Suspended and queued tasks keep
+     * their DOWNLOADING/QUEUED status and are requeued by {@link DownloadRecovery} on the next
+     * start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        List<ActiveDownload> idle = new ArrayList<>();
+        lock.lock();
+        try {
+            queued.clear();
+            for (ActiveDownload download : running.values()) {
+                download.suspended = true;
+                if (download.connections == 0 && !download.finishing) {
+                    download.finishing = true;
+                    idle.add(download);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Tasks backing off have no worker to write their final checkpoint
+        idle.forEach(download -> taskExecutor.finish(download, false));
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(shutdownGraceMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Download workers still running after {} ms, resuming from the last checkpoint",
+                        shutdownGraceMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class DownloadThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        DownloadThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setName(prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                log.error("Uncaught exception in download thread {}: {}", t.getName(), e.getMessage());
+            });
+            return thread;
+        }
+    }
+}
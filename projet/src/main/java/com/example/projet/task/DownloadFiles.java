@@ -0,0 +1,141 @@
+package com.example.projet.task;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * File helpers shared by the range workers: target preallocation, positional writes
+ * and the legacy part-file merge.
+ */
+@Slf4j
+final class DownloadFiles {
+
+    private DownloadFiles() {
+    }
+
+    /**
+     * Opens the target file for positional writes and sizes it to {@code fileSize} so every
+     * range can write at its absolute offset. The length is only extended, never truncated,
+     * so an already present partial file keeps its bytes.
+     */
+    static FileChannel openTarget(Path target, long fileSize) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw");
+        try {
+            if (file.length() < fileSize) {
+                file.setLength(fileSize);
+            }
+            return file.getChannel();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives {@code target} an inode of its own when it is hardlinked elsewhere, e.g. into the
+     * {@link ContentCache}: positional writes and merges change a file in place and must never
+     * reach the other links.
+     */
+    static void unshare(Path target) throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        int links;
+        try {
+            links = (Integer) Files.getAttribute(target, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return;
+        }
+        if (links > 1) {
+            Path copy = target.resolveSibling(target.getFileName() + ".unshare");
+            Files.copy(target, copy, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(copy, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Makes {@code target} a hardlink to {@code source}, or a copy of it when links are not
+     * possible (another file system). An existing target is replaced.
+     */
+    static void linkOrCopy(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes the whole buffer at {@code position}, looping over short writes.
+     *
+     * @return the number of bytes written
+     */
+    static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    static Path partPath(Path tempDir, String fileName, int index) {
+        return tempDir.resolve(fileName + ".part" + index);
+    }
+
+    /**
+     * Cuts a part file back to its segment length; bytes written past a checkpoint that was
+     * later split off to another segment must not end up in the merged file.
+     */
+    static void truncatePart(Path partPath, long length) throws IOException {
+        try (RandomAccessFile part = new RandomAccessFile(partPath.toFile(), "rw")) {
+            if (part.length() > length) {
+                part.setLength(length);
+            }
+        }
+    }
+
+    /**
+     * Concatenates the part files into the output file, in the given order (which must be the
+     * start-offset order of the segments, not their creation order).
+     */
+    static void mergeParts(Path tempDir, String outputFilePath, String fileName, List<Integer> partIndices)
+            throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(outputFilePath);
+             FileChannel outputChannel = outputStream.getChannel()) {
+
+            for (int i : partIndices) {
+                Path partPath = partPath(tempDir, fileName, i);
+                try (FileInputStream fis = new FileInputStream(partPath.toFile());
+                     FileChannel inputChannel = fis.getChannel()) {
+
+                    long size = inputChannel.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += inputChannel.transferTo(position, size - position, outputChannel);
+                    }
+                }
+            }
+        }
+    }
+
+    static void cleanupTempFiles(Path tempDir, String fileName, List<Integer> partIndices) {
+        for (int i : partIndices) {
+            try {
+                Files.deleteIfExists(partPath(tempDir, fileName, i));
+            } catch (IOException e) {
+                log.warn("Could not delete temporary file part {}", i, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionClosedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.ProtocolException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Meters of the download engine, published under {@code download.*}. Every tag has a bounded
+ * set of values: causes and statuses are enums, and hosts beyond the first
+ * {@code download.metrics.max-hosts} are counted under {@code other}. Meters used per read
+ * are resolved once per task, so the transfer loops only add to them.
+ */
+@Component
+public class DownloadMetrics {
+    private static final String OTHER_HOST = "other";
+
+    /** Why a transfer attempt failed, as far as the exception tells. */
+    enum FailureCause {
+        /** No data within the socket timeout. */
+        TIMEOUT,
+        /** TCP connection could not be opened, including DNS failures. */
+        CONNECT,
+        TLS,
+        /** Connection closed or reset before the range was complete. */
+        RESET,
+        /** Status, Content-Range or length rejected by {@link RangeResponses}. */
+        RESPONSE,
+        INTERRUPTED,
+        IO;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /** How a submission was answered. */
+    public enum Submission {
+        QUEUED, CACHED, COALESCED, REJECTED
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final int maxHosts;
+    private final Map<String, Counter> received = new ConcurrentHashMap<>();
+
+    private final Map<FailureCause, Counter> retries = new EnumMap<>(FailureCause.class);
+    private final Map<FailureCause, Counter> segmentFailures = new EnumMap<>(FailureCause.class);
+    private final Map<DownloadStatus, Counter> finished = new EnumMap<>(DownloadStatus.class);
+    private final Map<Submission, Counter> submissions = new EnumMap<>(Submission.class);
+
+    final Timer timeToFirstByte;
+    final Timer merge;
+    final Timer progressFlush;
+    private final Timer probe;
+
+    public DownloadMetrics(MeterRegistry meterRegistry,
+                           @Value("${download.metrics.max-hosts:50}") int maxHosts) {
+        this.meterRegistry = meterRegistry;
+        this.maxHosts = Math.max(0, maxHosts);
+        for (FailureCause cause : FailureCause.values()) {
+            retries.put(cause, Counter.builder("download.retries").tag("cause", cause.tag)
+                    .description("Transfer attempts retried after a failure")
+                    .register(meterRegistry));
+            segmentFailures.put(cause, Counter.builder("download.segment.failures").tag("cause", cause.tag)
+                    .description("Segments given back to the scheduler after their last retry")
+                    .register(meterRegistry));
+        }
+        for (DownloadStatus status : new DownloadStatus[]{
+                DownloadStatus.COMPLETED, DownloadStatus.FAILED, DownloadStatus.CANCELLED}) {
+            finished.put(status, Counter.builder("download.tasks.finished")
+                    .tag("status", status.name().toLowerCase(Locale.ROOT))
+                    .description("Tasks that reached a final state")
+                    .register(meterRegistry));
+        }
+        for (Submission submission : Submission.values()) {
+            submissions.put(submission, Counter.builder("download.requests")
+                    .tag("result", submission.name().toLowerCase(Locale.ROOT))
+                    .description("Download requests by how they were answered")
+                    .register(meterRegistry));
+        }
+        this.timeToFirstByte = Timer.builder("download.ttfb")
+                .description("From sending a range request to its response headers, connection setup included")
+                .register(meterRegistry);
+        this.merge = Timer.builder("download.merge")
+                .description("Concatenation of part files in PARTS write mode")
+                .register(meterRegistry);
+        this.progressFlush = Timer.builder("download.progress.flush")
+                .description("Batch write of live progress to the database")
+                .register(meterRegistry);
+        this.probe = Timer.builder("download.probe")
+                .description("HEAD (and range) probe of a submitted URL")
+                .register(meterRegistry);
+    }
+
+    /** Counter of bytes received from {@code host}; the engines add to it after every write. */
+    Counter received(String host) {
+        Counter counter = received.get(host);
+        if (counter != null) {
+            return counter;
+        }
+        String tag = received.size() < maxHosts ? host : OTHER_HOST;
+        return received.computeIfAbsent(tag, h -> Counter.builder("download.bytes.received")
+                .tag("host", h).baseUnit("bytes")
+                .description("Payload bytes received and written")
+                .register(meterRegistry));
+    }
+
+    void retried(Throwable error) {
+        retries.get(causeOf(error)).increment();
+    }
+
+    void segmentFailed(Throwable error) {
+        segmentFailures.get(causeOf(error)).increment();
+    }
+
+    void finished(DownloadStatus status) {
+        Counter counter = finished.get(status);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    public void submitted(Submission submission) {
+        submitted(submission, 1);
+    }
+
+    public void submitted(Submission submission, int count) {
+        if (count > 0) {
+            submissions.get(submission).increment(count);
+        }
+    }
+
+    public Timer probe() {
+        return probe;
+    }
+
+    static FailureCause causeOf(Throwable error) {
+        if (error instanceof ConnectTimeoutException || error instanceof ConnectException
+                || error instanceof UnknownHostException || error instanceof NoRouteToHostException) {
+            return FailureCause.CONNECT;
+        }
+        if (error instanceof SocketTimeoutException) {
+            return FailureCause.TIMEOUT;
+        }
+        if (error instanceof InterruptedIOException) {
+            return FailureCause.INTERRUPTED;
+        }
+        if (error instanceof SSLException) {
+            return FailureCause.TLS;
+        }
+        if (error instanceof ConnectionClosedException || error instanceof SocketException
+                || error instanceof EOFException) {
+            return FailureCause.RESET;
+        }
+        if (error instanceof ProtocolException) {
+            return FailureCause.RESPONSE;
+        }
+        return FailureCause.IO;
+    }
+}
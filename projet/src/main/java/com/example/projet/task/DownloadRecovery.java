@@ -0,0 +1,164 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadSegment;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.repository.DownloadSegmentRepository;
+import com.example.projet.repository.DownloadTaskRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Startup recovery for the durable task store. Tasks left DOWNLOADING or QUEUED by the previous
+ * run are reconciled with what is actually on disk and requeued, so they continue from their
+ * checkpointed offsets: a segment whose file is missing, too short or no longer matches the
+ * checksum of its checkpoint is cut back. Part files that belong to no unfinished task are
+ * deleted.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DownloadRecovery implements ApplicationRunner {
+    private static final EnumSet<DownloadStatus> INTERRUPTED =
+            EnumSet.of(DownloadStatus.DOWNLOADING, DownloadStatus.QUEUED);
+    private static final EnumSet<DownloadStatus> UNFINISHED =
+            EnumSet.of(DownloadStatus.DOWNLOADING, DownloadStatus.QUEUED, DownloadStatus.PAUSED);
+
+    private final DownloadTaskRepository repository;
+    private final DownloadSegmentRepository segmentRepository;
+    private final DownloadEngine downloadEngine;
+    private final RequestCoalescer requestCoalescer;
+    private final IntegrityVerifier integrityVerifier;
+
+    @Value("${download.recovery.enabled:true}")
+    private boolean enabled;
+
+    @Value("${download.write-mode:DIRECT}")
+    private WriteMode writeMode;
+
+    @Value("${file.storage.location}")
+    private String storageLocation;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        List<DownloadTask> unfinished = repository.findByStatusInOrderByCreatedAt(UNFINISHED);
+        removeOrphanParts(unfinished);
+
+        int requeued = 0;
+        for (DownloadTask task : unfinished) {
+            // Followers have no transfer of their own; they resume with their leader
+            if (!INTERRUPTED.contains(task.getStatus()) || requestCoalescer.leaderOf(task.getId()) != null) {
+                continue;
+            }
+            try {
+                long verified = reconcile(task);
+                task.setDownloadedBytes(verified);
+                task.setDownloadSpeed(0);
+                task.setStatus(DownloadStatus.QUEUED);
+                repository.save(task);
+                downloadEngine.submit(task);
+                requeued++;
+            } catch (Exception e) {
+                log.error("Could not recover task {}: {}", task.getId(), e.getMessage());
+                task.setStatus(DownloadStatus.FAILED);
+                repository.save(task);
+            }
+        }
+        if (requeued > 0) {
+            log.info("Requeued {} interrupted downloads", requeued);
+        }
+    }
+
+    /**
+     * Cuts back every segment checkpoint its file no longer backs and returns the verified
+     * total. Recovery relies on {@link DownloadTaskExecutor#checkpoint} forcing the bytes it
+     * counts before persisting them, so a checkpoint is trusted while its file is there. The
+     * DIRECT target is preallocated and its length proves nothing: a shorter target only shows
+     * that it was replaced. Checkpoints carrying a CRC32C are compared with the bytes on disk and
+     * restarted on a mismatch; part files are appended to, so they are also cut to their length.
+     */
+    private long reconcile(DownloadTask task) throws IOException {
+        List<DownloadSegment> segments = segmentRepository.findByTaskIdOrderBySegmentIndex(task.getId());
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Path target = Paths.get(task.getFilePath());
+        Path tempDir = target.getParent().resolve("temp");
+        long targetLength = Files.exists(target) ? Files.size(target) : 0;
+
+        List<DownloadSegment> clamped = new ArrayList<>();
+        long verified = 0;
+        for (DownloadSegment segment : segments) {
+            long onDisk;
+            if (writeMode == WriteMode.DIRECT) {
+                onDisk = Math.max(0, targetLength - segment.getStartOffset());
+            } else {
+                Path part = DownloadFiles.partPath(tempDir, task.getFileName(), segment.getSegmentIndex());
+                onDisk = Files.exists(part) ? Files.size(part) : 0;
+            }
+            if (segment.getDownloadedBytes() > onDisk) {
+                log.warn("Task {} segment {}: checkpoint {} bytes but only {} on disk",
+                        task.getId(), segment.getSegmentIndex(), segment.getDownloadedBytes(), onDisk);
+                segment.setDownloadedBytes(onDisk);
+                // The checksum covered the lost bytes; it is recomputed from disk on resume
+                segment.setCrc32c(null);
+                clamped.add(segment);
+            } else if (!integrityVerifier.matchesCheckpoint(task, segment)) {
+                log.warn("Task {} segment {}: {} checkpointed bytes no longer match their CRC32C, restarting it",
+                        task.getId(), segment.getSegmentIndex(), segment.getDownloadedBytes());
+                segment.setDownloadedBytes(0);
+                segment.setCrc32c(null);
+                clamped.add(segment);
+            }
+            verified += segment.getDownloadedBytes();
+        }
+        segmentRepository.updateDownloadedBytes(clamped);
+        return verified;
+    }
+
+    /** Deletes {@code temp/<name>.partN} files whose task is gone or already finished. */
+    private void removeOrphanParts(List<DownloadTask> unfinished) {
+        Path tempDir = Paths.get(storageLocation).resolve("temp");
+        if (!Files.isDirectory(tempDir)) {
+            return;
+        }
+        Set<String> live = new HashSet<>();
+        for (DownloadTask task : unfinished) {
+            live.add(task.getFileName());
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                int part = name.lastIndexOf(".part");
+                return part > 0 && !live.contains(name.substring(0, part));
+            }).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                    log.info("Deleted orphan part file {}", p);
+                } catch (IOException e) {
+                    log.warn("Could not delete orphan part file {}", p, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not scan {} for orphan part files: {}", tempDir, e.getMessage());
+        }
+    }
+}
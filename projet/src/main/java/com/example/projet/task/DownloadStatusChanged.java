@@ -0,0 +1,8 @@
+package com.example.projet.task;
+
+/**
+ * Published whenever a task's status row changes or the task is deleted. Listeners re-read
+ * the task; a missing row means it was deleted.
+ */
+public record DownloadStatusChanged(Long taskId) {
+}
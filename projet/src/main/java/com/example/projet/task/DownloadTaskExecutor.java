@@ -1,288 +1,557 @@
 package com.example.projet.task;
 
+import com.example.projet.model.DownloadSegment;
 import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.ChecksumAlgorithm;
 import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.repository.DownloadSegmentRepository;
 import com.example.projet.repository.DownloadTaskRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
-import javax.net.ssl.*;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
-
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Per-task transfer logic run by the {@link DownloadEngine}: preparing the target and segments,
+ * the segment worker loop, checkpoints and the final state transition. Threads and connection
+ * slots are owned by the engine; moving the bytes is left to the {@link TransferEngine}.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class DownloadTaskExecutor {
     private final DownloadTaskRepository repository;
-    private final ConcurrentMap<Long, AtomicBoolean> cancellationFlags = new ConcurrentHashMap<>();
-    private final ConcurrentMap<Long, AtomicBoolean> pauseFlags = new ConcurrentHashMap<>();
-    private final ConcurrentMap<Long, List<Future<?>>> futuresMap = new ConcurrentHashMap<>();
-    private final SSLContext sslContext = createTrustAllSSLContext();
+    private final DownloadSegmentRepository segmentRepository;
+    private final TransferEngine transferEngine;
+    private final ProgressRegistry progressRegistry;
+    private final ConnectionController connectionController;
+    private final IntegrityVerifier integrityVerifier;
+    private final ContentCache contentCache;
+    private final RequestCoalescer requestCoalescer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DownloadMetrics downloadMetrics;
+    private final HostCircuitBreaker circuitBreaker;
+
+    @Value("${download.write-mode:DIRECT}")
+    private WriteMode writeMode;
+
+    @Value("${download.segment.min-split-size:1048576}")
+    private long minSplitSize;
+
+    @Value("${download.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${download.retry.base-delay-ms:1000}")
+    private long retryBaseDelayMs;
+
+    @Value("${download.retry.max-delay-ms:30000}")
+    private long retryMaxDelayMs;
+
+    /** Why a worker left its task. */
+    enum WorkerExit {
+        /** Nothing left worth sharing. */
+        NO_WORK,
+        /** Gave its connection slot back to the engine for another task. */
+        YIELDED,
+        /** The task was paused or cancelled. */
+        STOPPED,
+        /** The engine preempted the task for a higher-priority one. */
+        PREEMPTED,
+        /** Every segment left is waiting out a retry delay, or its host's circuit is open. */
+        BACKOFF,
+        /** Its segment failed after all retries. */
+        FAILED
+    }
 
-    private SSLContext createTrustAllSSLContext() {
-        try {
-            TrustManager[] trustAllCerts = new TrustManager[] {
-                    new X509TrustManager() {
-                        public X509Certificate[] getAcceptedIssuers() { return null; }
-                        public void checkClientTrusted(X509Certificate[] certs, String authType) {}
-                        public void checkServerTrusted(X509Certificate[] certs, String authType) {}
-                    }
-            };
+    /**
+     * Moves the task to DOWNLOADING, opens the target (or the temp directory in PARTS mode) and
+     * loads or creates its segments. Runs once, on the task's first worker.
+     */
+    void prepare(ActiveDownload download) throws IOException {
+        DownloadTask task = download.task;
+        updateTaskStatus(download.taskId, DownloadStatus.DOWNLOADING);
+
+        download.uri = URI.create(task.getUrl());
+        download.mirrors = Mirrors.of(download.uri, task);
+        download.received = downloadMetrics.received(download.host);
+        download.tempDir = Paths.get(task.getFilePath()).getParent().resolve("temp");
+        if (writeMode == WriteMode.PARTS && !Files.exists(download.tempDir)) {
+            Files.createDirectories(download.tempDir);
+        }
 
-            SSLContext context = SSLContext.getInstance("TLS");
-            context.init(null, trustAllCerts, new java.security.SecureRandom());
-            return context;
-        } catch (NoSuchAlgorithmException | KeyManagementException e) {
-            throw new RuntimeException("Failed to initialize SSL context", e);
+        List<Segment> segments = loadOrCreateSegments(download);
+        connectionController.start(download);
+        // Progress is set before the scheduler: a non-null scheduler lets other workers in
+        download.progress = progressRegistry.register(download,
+                segments.stream().mapToLong(s -> s.done.get()).sum());
+        download.prefixDigest = IntegrityVerifier.newPrefixDigest(task);
+        if (writeMode == WriteMode.DIRECT) {
+            DownloadFiles.unshare(Paths.get(task.getFilePath()));
+            download.target = DownloadFiles.openTarget(Paths.get(task.getFilePath()), task.getFileSize());
         }
+        // A single stream is never split: the origin could not serve the tail on its own
+        download.scheduler = new SegmentScheduler(download.taskId, segments,
+                download.singleStream ? Long.MAX_VALUE : minSplitSize);
     }
 
-    public void executeDownload(DownloadTask task) {
-        Long taskId = task.getId();
-        cancellationFlags.putIfAbsent(taskId, new AtomicBoolean(false));
-        pauseFlags.putIfAbsent(taskId, new AtomicBoolean(false));
+    /**
+     * Worker loop: keeps taking segments from the scheduler until nothing is left to share, the
+     * task is stopped or preempted, or {@code yieldSlot} asks for the connection back. A failed
+     * attempt never blocks the worker: the segment is backed off in the scheduler and the worker
+     * moves on to another one, or leaves with {@link WorkerExit#BACKOFF} so the engine can give
+     * the slot to another task until the retry is due. A segment that fails after its last
+     * attempt goes back to the scheduler for another worker.
+     */
+    WorkerExit runWorker(ActiveDownload download, BooleanSupplier yieldSlot) {
+        Long taskId = download.taskId;
+        while (true) {
+            if (download.isStopped()) {
+                return WorkerExit.STOPPED;
+            }
+            if (download.preempted) {
+                return WorkerExit.PREEMPTED;
+            }
+            if (circuitBreaker.isOpen(download.hosts) && !download.scheduler.isComplete()) {
+                return WorkerExit.BACKOFF;
+            }
+            Segment segment = download.scheduler.next();
+            if (segment == null) {
+                return download.scheduler.retryDelayNanos() >= 0 ? WorkerExit.BACKOFF : WorkerExit.NO_WORK;
+            }
+            if (segment.entity.getId() == null) {
+                segmentRepository.save(segment.entity);
+            }
+            long doneBefore = segment.done.get();
+            try {
+                Mirrors.Mirror source = download.mirrors.choose(download.scheduler, circuitBreaker);
+                if (!circuitBreaker.tryAcquire(source.host)) {
+                    // Half-open, and another worker holds the trial
+                    download.scheduler.backOff(segment, Math.max(circuitBreaker.remainingNanos(source.host),
+                            backoffNanos(Math.max(1, segment.failures))));
+                    continue;
+                }
+                segment.source = source;
+                if (download.target != null) {
+                    downloadChunk(download, download.target, segment.start, segment);
+                } else {
+                    downloadPart(download, DownloadFiles.partPath(download.tempDir,
+                            download.task.getFileName(), segment.index), segment);
+                }
+                if (segment.isComplete()) {
+                    segment.failures = 0;
+                    circuitBreaker.onSuccess(segment.source.host);
+                }
+            } catch (IOException e) {
+                if (download.isStopped()) {
+                    download.scheduler.release(segment);
+                    return WorkerExit.STOPPED;
+                }
+                if (!retry(download, segment, segment.done.get() > doneBefore, e)) {
+                    return WorkerExit.FAILED;
+                }
+            } catch (Exception e) {
+                log.error("Error downloading chunk for task {}: {}", taskId, e.getMessage());
+                downloadMetrics.segmentFailed(e);
+                download.scheduler.release(segment);
+                return WorkerExit.FAILED;
+            }
+            if (yieldSlot.getAsBoolean()) {
+                return WorkerExit.YIELDED;
+            }
+        }
+    }
 
+    /**
+     * Final state transition once the last worker of a task has left: CANCELLED (files and
+     * segments removed), PAUSED (checkpoint kept), FAILED, or COMPLETED after the merge in
+     * PARTS mode.
+     */
+    void finish(ActiveDownload download, boolean failed) {
+        Long taskId = download.taskId;
+        DownloadTask task = download.task;
+        String filePath = task.getFilePath();
         try {
-            updateTaskStatus(taskId, DownloadStatus.DOWNLOADING);
+            release(download);
 
-            URL url = new URL(task.getUrl());
-            long fileSize = task.getFileSize();
-            int numThreads = task.getNumberOfThreads();
-            String filePath = task.getFilePath();
+            if (download.cancelled) {
+                updateTaskStatus(taskId, DownloadStatus.CANCELLED);
+                Files.deleteIfExists(Paths.get(filePath));
+                if (download.isPrepared() && download.target == null) {
+                    DownloadFiles.cleanupTempFiles(download.tempDir, task.getFileName(), partIndices(download));
+                }
+                segmentRepository.deleteByTaskId(taskId);
+                return;
+            }
 
-            Path tempDir = Paths.get(filePath).getParent().resolve("temp");
-            if (!Files.exists(tempDir)) {
-                Files.createDirectories(tempDir);
+            if (download.suspended) {
+                log.info("Task {} suspended for shutdown, it resumes from its last checkpoint", taskId);
+                return;
             }
 
-            long chunkSize = fileSize / numThreads;
-            List<DownloadRange> ranges = new ArrayList<>();
-            for (int i = 0; i < numThreads; i++) {
-                long start = i * chunkSize;
-                long end = (i == numThreads - 1) ? fileSize - 1 : start + chunkSize - 1;
-                ranges.add(new DownloadRange(start, end));
+            if (download.paused) {
+                // Stopped to pass the transfer on to the requests that share it
+                if (requestCoalescer.handOver(taskId)) {
+                    return;
+                }
+                updateTaskStatus(taskId, DownloadStatus.PAUSED);
+                return;
             }
 
-            ExecutorService executor = Executors.newFixedThreadPool(numThreads, new DownloadThreadFactory(taskId));
-            List<Future<?>> futures = new ArrayList<>();
-            futuresMap.put(taskId, futures);
-
-            AtomicLong totalDownloaded = new AtomicLong(0);
-            for (int i = 0; i < ranges.size(); i++) {
-                DownloadRange range = ranges.get(i);
-                String partFilePath = tempDir.resolve(task.getFileName() + ".part" + i).toString();
-
-                futures.add(executor.submit(() -> {
-                    FileLock lock = null;
-                    try (RandomAccessFile partFile = new RandomAccessFile(partFilePath, "rw");
-                         FileChannel channel = partFile.getChannel()) {
-
-                        lock = channel.tryLock();
-                        if (lock == null) {
-                            throw new IOException("Could not acquire lock on file: " + partFilePath);
-                        }
-
-                        downloadChunk(url, partFile, range, taskId, totalDownloaded);
-                    } catch (Exception e) {
-                        log.error("Error downloading chunk for task {}: {}", taskId, e.getMessage());
-                        updateTaskStatus(taskId, DownloadStatus.FAILED);
-                    } finally {
-                        if (lock != null && lock.isValid()) {
-                            try {
-                                lock.release();
-                            } catch (IOException e) {
-                                log.warn("Error releasing file lock: {}", e.getMessage());
-                            }
-                        }
-                    }
-                }));
+            if (failed || !download.isPrepared() || !download.scheduler.isComplete()) {
+                updateTaskStatus(taskId, DownloadStatus.FAILED);
+                return;
             }
 
-            for (Future<?> future : futures) {
-                try {
-                    future.get();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Download interrupted for task {}", taskId);
-                    updateTaskStatus(taskId, DownloadStatus.PAUSED);
-                    return;
-                } catch (ExecutionException e) {
-                    log.error("Error in download thread: {}", e.getCause().getMessage());
-                    updateTaskStatus(taskId, DownloadStatus.FAILED);
-                    return;
-                }
+            if (task.getFileSize() < 0) {
+                settleFileSize(download);
+            }
 
-                if (cancellationFlags.get(taskId).get()) {
-                    updateTaskStatus(taskId, DownloadStatus.CANCELLED);
-                    cleanupTempFiles(tempDir, task.getFileName(), ranges.size());
-                    return;
-                }
+            if (IntegrityVerifier.isVerified(task) && !verifyIntegrity(download)) {
+                return;
+            }
 
-                if (pauseFlags.get(taskId).get()) {
-                    updateTaskStatus(taskId, DownloadStatus.PAUSED);
-                    return;
+            if (download.target == null) {
+                for (Segment segment : download.scheduler.segments()) {
+                    DownloadFiles.truncatePart(DownloadFiles.partPath(download.tempDir, task.getFileName(), segment.index),
+                            segment.end + 1 - segment.start);
                 }
+                // The merge truncates the output in place; a previous file there may be a cache link
+                Files.deleteIfExists(Paths.get(filePath));
+                long mergeStart = System.nanoTime();
+                DownloadFiles.mergeParts(download.tempDir, filePath, task.getFileName(), partIndices(download));
+                downloadMetrics.merge.record(System.nanoTime() - mergeStart, TimeUnit.NANOSECONDS);
+                DownloadFiles.cleanupTempFiles(download.tempDir, task.getFileName(), partIndices(download));
             }
-
-            mergeParts(tempDir, filePath, task.getFileName(), ranges.size());
-            cleanupTempFiles(tempDir, task.getFileName(), ranges.size());
+            segmentRepository.deleteByTaskId(taskId);
             updateTaskStatus(taskId, DownloadStatus.COMPLETED);
             updateTaskCompletedAt(taskId, LocalDateTime.now());
+            requestCoalescer.complete(taskId);
+            contentCache.store(task, IntegrityVerifier.isVerified(task)
+                    && task.getChecksumAlgorithm() == ChecksumAlgorithm.SHA_256 ? task.getExpectedChecksum() : null);
 
         } catch (Exception e) {
-            log.error("Error executing download for task {}: {}", taskId, e.getMessage());
+            log.error("Error finishing download for task {}: {}", taskId, e.getMessage());
             updateTaskStatus(taskId, DownloadStatus.FAILED);
-        } finally {
-            cancellationFlags.remove(taskId);
-            pauseFlags.remove(taskId);
-            futuresMap.remove(taskId);
         }
     }
 
-    private void downloadChunk(URL url, RandomAccessFile partFile, DownloadRange range,
-                               Long taskId, AtomicLong totalDownloaded) throws IOException {
-        HttpURLConnection connection = createConnection(url, range);
-
-        int maxRetries = 3;
-        int retryCount = 0;
-        boolean success = false;
-
-        while (retryCount < maxRetries && !success && !isCancelledOrPaused(taskId)) {
-            try (InputStream inputStream = connection.getInputStream()) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                long downloaded = 0;
-                long lastUpdateTime = System.currentTimeMillis();
-                long lastDownloaded = 0;
-
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    if (isCancelledOrPaused(taskId)) {
-                        break;
-                    }
-
-                    partFile.write(buffer, 0, bytesRead);
-                    downloaded += bytesRead;
-                    totalDownloaded.addAndGet(bytesRead);
+    /**
+     * Compares the streamed checksum with the expected one and stores the result. On a mismatch
+     * the corrupted segments are reset to zero bytes, so a resume re-fetches only them, and the
+     * task is marked FAILED.
+     */
+    private boolean verifyIntegrity(ActiveDownload download) throws IOException {
+        Long taskId = download.taskId;
+        String expected = download.task.getExpectedChecksum();
+        IntegrityVerifier.Verification result = integrityVerifier.verify(download);
+        if (result.matches()) {
+            updateTaskIntegrity(taskId, result.actual(), true, null);
+            return true;
+        }
 
-                    long currentTime = System.currentTimeMillis();
-                    if (currentTime - lastUpdateTime > 500) {
-                        double speed = (totalDownloaded.get() - lastDownloaded) / ((currentTime - lastUpdateTime) / 1000.0);
-                        updateTaskProgress(taskId, totalDownloaded.get(), speed);
-                        lastDownloaded = totalDownloaded.get();
-                        lastUpdateTime = currentTime;
-                    }
-                }
-                success = true;
-            } catch (IOException e) {
-                retryCount++;
-                if (retryCount >= maxRetries) {
-                    throw e;
-                }
-                sleepBeforeRetry(retryCount);
-                connection = createConnection(url, range);
-            } finally {
-                connection.disconnect();
+        List<DownloadSegment> reset = new ArrayList<>();
+        long resetBytes = 0;
+        for (Segment segment : download.scheduler.segments()) {
+            if (result.corruptSegments().contains(segment.index)) {
+                resetBytes += segment.entity.getDownloadedBytes();
+                segment.entity.setDownloadedBytes(0);
+                segment.entity.setCrc32c(null);
+                reset.add(segment.entity);
             }
         }
+        segmentRepository.updateDownloadedBytes(reset);
+
+        String error = "Checksum mismatch: expected " + expected + ", got " + result.actual() + "; "
+                + (reset.isEmpty()
+                ? "every segment holds the bytes received, so the origin served different content"
+                : "corrupt segments " + result.corruptSegments() + " are re-fetched on resume");
+        log.warn("Task {}: {}", taskId, error);
+        updateTaskIntegrity(taskId, result.actual(), false, error);
+        updateTaskProgress(taskId, download.progress.getDownloadedBytes() - resetBytes, 0);
+        updateTaskStatus(taskId, DownloadStatus.FAILED);
+        return false;
+    }
+
+    /**
+     * Records the length of a download whose size was unknown, now that its stream has ended,
+     * and cuts the target to it in case an earlier attempt had written further.
+     */
+    private void settleFileSize(ActiveDownload download) throws IOException {
+        long size = download.scheduler.segments().stream().mapToLong(s -> s.end + 1 - s.start).sum();
+        download.task.setFileSize(size);
+        if (download.target != null) {
+            DownloadFiles.truncatePart(Paths.get(download.task.getFilePath()), size);
+        }
+        repository.findById(download.taskId).ifPresent(task -> {
+            task.setFileSize(size);
+            repository.save(task);
+        });
+    }
+
+    /**
+     * Puts a preempted task back to QUEUED once its last worker has left: the checkpoint is
+     * written and the target closed, so the next run resumes where this one stopped.
+     */
+    void requeue(ActiveDownload download) {
+        try {
+            release(download);
+        } catch (IOException e) {
+            log.warn("Could not close target of preempted task {}: {}", download.taskId, e.getMessage());
+        }
+        updateTaskStatus(download.taskId, DownloadStatus.QUEUED);
     }
 
-    private HttpURLConnection createConnection(URL url, DownloadRange range) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-        connection.setRequestProperty("Range", "bytes=" + range.start + "-" + range.end);
-        connection.setRequestProperty("User-Agent", "Mozilla/5.0");
-        connection.setRequestProperty("Accept", "*/*");
-        connection.setRequestProperty("Connection", "keep-alive");
-        connection.setConnectTimeout(30000);
-        connection.setReadTimeout(30000);
-        connection.setInstanceFollowRedirects(true);
-
-        if (connection instanceof HttpsURLConnection) {
-            HttpsURLConnection httpsConn = (HttpsURLConnection) connection;
-            httpsConn.setSSLSocketFactory(sslContext.getSocketFactory());
-            httpsConn.setHostnameVerifier((hostname, session) -> true);
+    /** Checkpoints a prepared task, closes its target and drops its live progress. */
+    private void release(ActiveDownload download) throws IOException {
+        if (!download.isPrepared()) {
+            return;
+        }
+        checkpoint(download);
+        if (download.target != null) {
+            download.target.close();
         }
+        progressRegistry.unregister(download.taskId);
+        updateTaskProgress(download.taskId, download.progress.getDownloadedBytes(), 0);
+    }
 
-        return connection;
+    private List<Integer> partIndices(ActiveDownload download) {
+        return download.scheduler.segments().stream().map(s -> s.index).toList();
     }
 
-    private void mergeParts(Path tempDir, String outputFilePath, String fileName, int numParts) throws IOException {
-        try (FileOutputStream outputStream = new FileOutputStream(outputFilePath, true);
-             FileChannel outputChannel = outputStream.getChannel()) {
+    /**
+     * PARTS mode: the segment owns its part file exclusively (the scheduler never hands a
+     * segment to two workers), so no file lock is held across the network reads.
+     */
+    private void downloadPart(ActiveDownload download, Path partPath, Segment segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            downloadChunk(download, channel, 0, segment);
+        }
+    }
 
-            for (int i = 0; i < numParts; i++) {
-                Path partPath = tempDir.resolve(fileName + ".part" + i);
-                try (FileInputStream fis = new FileInputStream(partPath.toFile());
-                     FileChannel inputChannel = fis.getChannel()) {
+    /**
+     * Returns the checkpointed segments of a resumed task, or splits a fresh task into
+     * {@code numberOfThreads} ranges and persists them. A single-stream task gets one segment,
+     * open-ended when the length is unknown.
+     */
+    private List<Segment> loadOrCreateSegments(ActiveDownload download) throws IOException {
+        DownloadTask task = download.task;
+        List<DownloadSegment> saved = segmentRepository.findByTaskIdOrderBySegmentIndex(task.getId());
+        if (saved.isEmpty()) {
+            long fileSize = task.getFileSize();
+            int numThreads = download.singleStream ? 1 : task.getNumberOfThreads();
+            long chunkSize = fileSize / numThreads;
+            saved = new ArrayList<>(numThreads);
+            for (int i = 0; i < numThreads; i++) {
+                DownloadSegment segment = new DownloadSegment();
+                segment.setTaskId(task.getId());
+                segment.setSegmentIndex(i);
+                segment.setStartOffset(i * chunkSize);
+                segment.setEndOffset(fileSize < 0 ? Segment.OPEN_END
+                        : (i == numThreads - 1) ? fileSize - 1 : (i + 1) * chunkSize - 1);
+                saved.add(segment);
+            }
+            saved = segmentRepository.saveAll(saved);
+        } else {
+            log.info("Resuming task {} from {} checkpointed segments", task.getId(), saved.size());
+        }
+        List<Segment> segments = new ArrayList<>(saved.size());
+        boolean verified = IntegrityVerifier.isVerified(task);
+        for (DownloadSegment entity : saved) {
+            segments.add(new Segment(entity, verified ? integrityVerifier.restore(task, entity) : null));
+        }
+        return segments;
+    }
 
-                    FileLock lock = inputChannel.tryLock(0, Long.MAX_VALUE, true);
-                    if (lock != null) {
-                        inputChannel.transferTo(0, inputChannel.size(), outputChannel);
-                        lock.release();
-                    }
+    /**
+     * Persists the bounds and confirmed byte count of every segment in one batch. Task progress
+     * is flushed separately by the {@link ProgressRegistry}. Counters are read first and the
+     * file (the target, or the part file of every segment that advanced) is forced after, so a
+     * checkpoint never claims bytes that are not on disk yet; {@link DownloadRecovery} relies on
+     * that. Runs on the engine's dispatcher, never on a worker: the read loop does no database
+     * I/O.
+     */
+    void checkpoint(ActiveDownload download) {
+        List<Segment> segments = download.scheduler.segments();
+        List<SegmentCheckpoint> checkpoints = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            if (segment.entity.getId() == null) {
+                continue;
+            }
+            if (segment.checksum != null) {
+                // Byte count and checksum are read together so they always describe the same bytes
+                synchronized (segment.checksum) {
+                    checkpoints.add(new SegmentCheckpoint(segment, segment.end, segment.done.get(),
+                            Integer.toUnsignedLong(segment.checksum.value())));
                 }
+            } else {
+                long end = segment.end;
+                checkpoints.add(new SegmentCheckpoint(segment, end,
+                        Math.min(segment.done.get(), end + 1 - segment.start), null));
             }
         }
-    }
+        if (!force(download, checkpoints)) {
+            return;
+        }
 
-    private void cleanupTempFiles(Path tempDir, String fileName, int numParts) {
-        for (int i = 0; i < numParts; i++) {
-            try {
-                Path partPath = tempDir.resolve(fileName + ".part" + i);
-                Files.deleteIfExists(partPath);
-            } catch (IOException e) {
-                log.warn("Could not delete temporary file part {}", i, e);
+        List<DownloadSegment> entities = new ArrayList<>(checkpoints.size());
+        for (SegmentCheckpoint checkpoint : checkpoints) {
+            DownloadSegment entity = checkpoint.segment().entity;
+            entity.setEndOffset(checkpoint.end());
+            entity.setDownloadedBytes(checkpoint.done());
+            if (checkpoint.crc32c() != null) {
+                entity.setCrc32c(checkpoint.crc32c());
             }
+            entities.add(entity);
+        }
+        try {
+            segmentRepository.updateDownloadedBytes(entities);
+        } catch (Exception e) {
+            log.warn("Could not persist segment checkpoints: {}", e.getMessage());
         }
     }
 
-    private boolean isCancelledOrPaused(Long taskId) {
-        return cancellationFlags.getOrDefault(taskId, new AtomicBoolean(false)).get() ||
-                pauseFlags.getOrDefault(taskId, new AtomicBoolean(false)).get();
+    /** Segment state read for a checkpoint, before the file holding it is forced. */
+    private record SegmentCheckpoint(Segment segment, long end, long done, Long crc32c) {
     }
 
-    private void sleepBeforeRetry(int retryCount) {
+    /**
+     * Forces the bytes counted in {@code checkpoints} to disk. Part files whose count did not
+     * move since the last checkpoint are skipped. Returns {@code false} when nothing may be
+     * persisted: a file could not be forced, or the target is already closed.
+     */
+    private boolean force(ActiveDownload download, List<SegmentCheckpoint> checkpoints) {
         try {
-            Thread.sleep(2000 * retryCount);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
+            FileChannel target = download.target;
+            if (target != null) {
+                // A closed target was checkpointed by release() right before it was closed
+                if (!target.isOpen()) {
+                    return false;
+                }
+                target.force(false);
+                return true;
+            }
+            for (SegmentCheckpoint checkpoint : checkpoints) {
+                Segment segment = checkpoint.segment();
+                if (checkpoint.done() == segment.entity.getDownloadedBytes()) {
+                    continue;
+                }
+                Path part = DownloadFiles.partPath(download.tempDir, download.task.getFileName(), segment.index);
+                if (Files.exists(part)) {
+                    try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                        channel.force(false);
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not force downloaded bytes before checkpoint: {}", e.getMessage());
+            return false;
         }
     }
 
-    public void pauseDownload(Long taskId) {
-        pauseFlags.getOrDefault(taskId, new AtomicBoolean(false)).set(true);
-        futuresMap.getOrDefault(taskId, new ArrayList<>()).forEach(future -> future.cancel(true));
-        updateTaskStatus(taskId, DownloadStatus.PAUSED);
+    /**
+     * Handles a failed attempt at {@code segment}. The circuit breaker of the source's host hears
+     * of it unless the attempt received data, which shows the origin is alive, and the source
+     * loses weight among the task's mirrors. Below
+     * {@code download.retry.max-attempts} failures in a row without progress, the segment is
+     * backed off in the scheduler; otherwise it is released and {@code false} is returned.
+     */
+    private boolean retry(ActiveDownload download, Segment segment, boolean progressed, IOException error) {
+        Mirrors.Mirror source = segment.source;
+        source.penalize();
+        if (progressed) {
+            circuitBreaker.onSuccess(source.host);
+            segment.failures = 1;
+        } else {
+            if (DownloadMetrics.causeOf(error) != DownloadMetrics.FailureCause.INTERRUPTED) {
+                circuitBreaker.onFailure(source.host);
+            }
+            segment.failures++;
+        }
+        if (segment.failures >= maxAttempts) {
+            log.error("Error downloading chunk for task {}: {}", download.taskId, error.getMessage());
+            downloadMetrics.segmentFailed(error);
+            download.scheduler.release(segment);
+            return false;
+        }
+        long delay = backoffNanos(segment.failures);
+        log.warn("Task {}: segment {} failed at offset {} on {} ({}), retrying in {} ms", download.taskId,
+                segment.index, segment.position(), source.host, error.getMessage(),
+                TimeUnit.NANOSECONDS.toMillis(delay));
+        downloadMetrics.retried(error);
+        download.scheduler.backOff(segment, delay);
+        return true;
     }
 
-    public void cancelDownload(Long taskId) {
-        cancellationFlags.getOrDefault(taskId, new AtomicBoolean(false)).set(true);
-        futuresMap.getOrDefault(taskId, new ArrayList<>()).forEach(future -> future.cancel(true));
-        updateTaskStatus(taskId, DownloadStatus.CANCELLED);
+    /**
+     * Delay before attempt {@code failures + 1}: the base delay doubled per failure up to the
+     * maximum, half of it fixed and half random, so the workers that lost the same origin at
+     * the same moment do not all come back at once.
+     */
+    private long backoffNanos(int failures) {
+        long ceiling = Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(failures - 1, 20));
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        return TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    /**
+     * One attempt at the remaining bytes of {@code segment} through the configured
+     * {@link TransferEngine}. {@code channelOffset} is the channel position of the segment
+     * start: the segment start for the shared target file, 0 for a part file. Every attempt
+     * asks for {@code bytes=<start+done>-<end>} and writes at {@code channelOffset + done}, so
+     * neither a resume nor a retry fetches or writes a byte twice.
+     */
+    private void downloadChunk(ActiveDownload download, FileChannel channel, long channelOffset,
+                               Segment segment) throws IOException {
+        if (segment.isComplete() || download.isStopped()) {
+            return;
+        }
+        if (!download.ranged && segment.done.get() > 0) {
+            restart(download, segment);
+        }
+        transferEngine.transfer(download, channel, channelOffset, segment);
+    }
+
+    /**
+     * Starts a stream over from the first byte, for an origin that cannot resume it. The bytes
+     * already counted are taken back from the progress and the checksums.
+     */
+    private void restart(ActiveDownload download, Segment segment) {
+        log.info("Task {}: the server does not support ranges, restarting from the first byte", download.taskId);
+        download.progress.add(-segment.done.get());
+        segment.restart();
+        IntegrityVerifier.PrefixDigest digest = download.prefixDigest;
+        if (digest != null) {
+            synchronized (digest) {
+                digest.digest.reset();
+                digest.frontier = 0;
+            }
+        }
     }
 
     private void updateTaskStatus(Long taskId, DownloadStatus status) {
         repository.findById(taskId).ifPresent(task -> {
             task.setStatus(status);
             repository.save(task);
+            downloadMetrics.finished(status);
+            requestCoalescer.mirror(task);
         });
+        eventPublisher.publishEvent(new DownloadStatusChanged(taskId));
     }
 
     private void updateTaskProgress(Long taskId, long downloadedBytes, double downloadSpeed) {
@@ -293,40 +562,19 @@ public class DownloadTaskExecutor {
         });
     }
 
-    private void updateTaskCompletedAt(Long taskId, LocalDateTime completedAt) {
+    private void updateTaskIntegrity(Long taskId, String actualChecksum, boolean verified, String error) {
         repository.findById(taskId).ifPresent(task -> {
-            task.setCompletedAt(completedAt);
+            task.setActualChecksum(actualChecksum);
+            task.setChecksumVerified(verified);
+            task.setIntegrityError(error);
             repository.save(task);
         });
     }
 
-    private static class DownloadRange {
-        final long start;
-        final long end;
-
-        DownloadRange(long start, long end) {
-            this.start = start;
-            this.end = end;
-        }
-    }
-
-    private static class DownloadThreadFactory implements ThreadFactory {
-        private final Long taskId;
-        private int threadCount = 0;
-
-        public DownloadThreadFactory(Long taskId) {
-            this.taskId = taskId;
-        }
-
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread thread = new Thread(r);
-            thread.setName("DownloadThread-" + taskId + "-" + (++threadCount));
-            thread.setPriority(Thread.MIN_PRIORITY);
-            thread.setUncaughtExceptionHandler((t, e) -> {
-                log.error("Uncaught exception in download thread {}: {}", t.getName(), e.getMessage());
-            });
-            return thread;
-        }
+    private void updateTaskCompletedAt(Long taskId, LocalDateTime completedAt) {
+        repository.findById(taskId).ifPresent(task -> {
+            task.setCompletedAt(completedAt);
+            repository.save(task);
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package com.example.projet.task;
+
+/**
+ * Threads the {@link DownloadEngine} runs segment workers on.
+ */
+public enum ExecutionMode {
+    /** A fixed pool of platform threads sized to the global connection cap. */
+    PLATFORM,
+    /** One virtual thread per worker; the connection caps are the only limit. */
+    VIRTUAL
+}
@@ -0,0 +1,134 @@
+package com.example.projet.task;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-host circuit breaker shared by every task. After
+ * {@code download.circuit-breaker.failure-threshold} attempts in a row fail against a host
+ * without receiving a byte, its circuit opens: the {@link DownloadEngine} grants no connection
+ * slot for the host, so a dead origin does not hold pool slots that other hosts could use.
+ * Once {@code download.circuit-breaker.open-ms} has passed the circuit is half-open and lets a
+ * single trial attempt through; it closes when an attempt receives data and opens again if the
+ * trial fails.
+ * <p>
+ * Only hosts with recent failures are tracked. Hosts with an open or half-open circuit are
+ * published as the {@code download.circuit.open} gauge.
+ */
+@Component
+@Slf4j
+public class HostCircuitBreaker {
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Map<String, Circuit> circuits = new HashMap<>();
+
+    private static final class Circuit {
+        int failures;
+        boolean open;
+        long openUntilNanos;
+        /** Start of the half-open trial in flight, 0 if none. */
+        long trialAtNanos;
+    }
+
+    public HostCircuitBreaker(MeterRegistry meterRegistry,
+                              @Value("${download.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                              @Value("${download.circuit-breaker.open-ms:30000}") long openMs) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openMs));
+        Gauge.builder("download.circuit.open", this, HostCircuitBreaker::openCircuits)
+                .description("Hosts whose circuit is open or half-open")
+                .register(meterRegistry);
+    }
+
+    /** Whether {@code host} is refused outright: its circuit is open and not yet half-open. */
+    synchronized boolean isOpen(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit != null && circuit.open && System.nanoTime() - circuit.openUntilNanos < 0;
+    }
+
+    /** Whether every one of {@code hosts} is refused: a task with mirrors waits for all of them. */
+    synchronized boolean isOpen(List<String> hosts) {
+        for (String host : hosts) {
+            if (!isOpen(host)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether an attempt against {@code host} may start now. A half-open circuit admits one
+     * trial at a time; a trial whose outcome never came back is given up after the open period.
+     */
+    synchronized boolean tryAcquire(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null || !circuit.open) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (now - circuit.openUntilNanos < 0) {
+            return false;
+        }
+        if (circuit.trialAtNanos != 0 && now - circuit.trialAtNanos < openNanos) {
+            return false;
+        }
+        circuit.trialAtNanos = now;
+        return true;
+    }
+
+    /** Nanoseconds until {@code host} is half-open, 0 if it is not open. */
+    synchronized long remainingNanos(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null || !circuit.open ? 0 : Math.max(0, circuit.openUntilNanos - System.nanoTime());
+    }
+
+    /** Nanoseconds until the first of {@code hosts} is half-open, 0 if one is not open. */
+    synchronized long remainingNanos(List<String> hosts) {
+        long remaining = Long.MAX_VALUE;
+        for (String host : hosts) {
+            remaining = Math.min(remaining, remainingNanos(host));
+        }
+        return hosts.isEmpty() ? 0 : remaining;
+    }
+
+    /** The host answered with data: its circuit closes and its failure count is forgotten. */
+    synchronized void onSuccess(String host) {
+        Circuit circuit = circuits.remove(host);
+        if (circuit != null && circuit.open) {
+            log.info("Circuit for host {} closed", host);
+        }
+    }
+
+    /** An attempt against {@code host} failed without receiving a byte. */
+    synchronized void onFailure(String host) {
+        Circuit circuit = circuits.computeIfAbsent(host, h -> new Circuit());
+        circuit.failures++;
+        if (circuit.open) {
+            // Attempts started before the circuit opened still report in; only the trial reopens it
+            if (circuit.trialAtNanos != 0) {
+                circuit.trialAtNanos = 0;
+                circuit.openUntilNanos = System.nanoTime() + openNanos;
+                log.warn("Circuit for host {} reopened: trial attempt failed", host);
+            }
+            return;
+        }
+        if (circuit.failures >= failureThreshold) {
+            circuit.open = true;
+            circuit.openUntilNanos = System.nanoTime() + openNanos;
+            log.warn("Circuit for host {} opened after {} failed attempts in a row, next trial in {} ms",
+                    host, circuit.failures, TimeUnit.NANOSECONDS.toMillis(openNanos));
+        }
+    }
+
+    private synchronized double openCircuits() {
+        return circuits.values().stream().filter(c -> c.open).count();
+    }
+}
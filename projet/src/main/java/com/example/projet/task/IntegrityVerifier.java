@@ -0,0 +1,263 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadSegment;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.ChecksumAlgorithm;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksums computed while a task downloads, so a finished file is never read back in full.
+ * <p>
+ * Every segment of a verified task keeps a running CRC32C of the bytes it received
+ * ({@link SegmentChecksum}). A CRC32C file digest is combined from them at the end. MD5 and
+ * SHA-256 cannot be combined, so they are computed over the contiguous prefix of finished
+ * bytes: every {@code download.checksum.digest-interval-ms} the digest is advanced past what the
+ * workers have written since, while that data is still in the page cache. The hashing runs on a
+ * thread of its own so it never holds up the other scheduled jobs (progress flushes, bandwidth
+ * rebalancing), which share Spring's single scheduler thread.
+ * <p>
+ * On a mismatch each segment is re-read once and compared with the CRC32C of what it received.
+ * The segments that differ were corrupted locally; they are reset so a resume re-fetches only
+ * them. When none differs, the origin itself served other content than expected.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class IntegrityVerifier {
+    private static final int READ_CHUNK = 1 << 20;
+
+    private final ProgressRegistry progressRegistry;
+
+    @Value("${download.write-mode:DIRECT}")
+    private WriteMode writeMode;
+
+    private final ExecutorService digester = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "IntegrityDigester");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean digesting = new AtomicBoolean();
+
+    /** Outcome of {@link #verify}: the digest found and, on a mismatch, the corrupted segments. */
+    record Verification(String actual, boolean matches, List<Integer> corruptSegments) {
+    }
+
+    /** Hash state of the finished prefix {@code [0, frontier)} of a task; guarded by itself. */
+    static final class PrefixDigest {
+        final MessageDigest digest;
+        long frontier;
+
+        PrefixDigest(MessageDigest digest) {
+            this.digest = digest;
+        }
+    }
+
+    static boolean isVerified(DownloadTask task) {
+        return task.getChecksumAlgorithm() != null && task.getExpectedChecksum() != null;
+    }
+
+    /** A fresh prefix digest for MD5/SHA-256 tasks, {@code null} otherwise. */
+    static PrefixDigest newPrefixDigest(DownloadTask task) {
+        if (!isVerified(task) || task.getChecksumAlgorithm() == ChecksumAlgorithm.CRC32C) {
+            return null;
+        }
+        try {
+            return new PrefixDigest(MessageDigest.getInstance(
+                    task.getChecksumAlgorithm() == ChecksumAlgorithm.MD5 ? "MD5" : "SHA-256"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checksum state of a segment loaded from its checkpoint. When the checkpoint carries no
+     * checksum for its bytes (written before verification existed, or clamped by recovery) they
+     * are read back from disk once.
+     */
+    SegmentChecksum restore(DownloadTask task, DownloadSegment entity) throws IOException {
+        long length = entity.getDownloadedBytes();
+        if (length == 0) {
+            return new SegmentChecksum();
+        }
+        if (entity.getCrc32c() != null) {
+            return new SegmentChecksum(entity.getCrc32c().intValue(), length);
+        }
+        return new SegmentChecksum(crcFromDisk(task, entity.getSegmentIndex(), entity.getStartOffset(), length), length);
+    }
+
+    /**
+     * Whether the checkpointed bytes of {@code entity} still hash to the CRC32C stored with
+     * them. A checkpoint without a checksum cannot be checked and passes.
+     */
+    boolean matchesCheckpoint(DownloadTask task, DownloadSegment entity) throws IOException {
+        long length = entity.getDownloadedBytes();
+        if (length == 0 || entity.getCrc32c() == null) {
+            return true;
+        }
+        return crcFromDisk(task, entity.getSegmentIndex(), entity.getStartOffset(), length) == entity.getCrc32c().intValue();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        digester.shutdownNow();
+    }
+
+    /** Hands a digest pass to the digester thread, unless the previous one is still running. */
+    @Scheduled(fixedDelayString = "${download.checksum.digest-interval-ms:500}")
+    void advanceDigests() {
+        if (!digester.isShutdown() && digesting.compareAndSet(false, true)) {
+            digester.execute(() -> {
+                try {
+                    advanceAll();
+                } finally {
+                    digesting.set(false);
+                }
+            });
+        }
+    }
+
+    private void advanceAll() {
+        for (TaskProgress progress : progressRegistry.active()) {
+            ActiveDownload download = progress.download();
+            if (download.prefixDigest == null || !download.isPrepared() || download.finishing) {
+                continue;
+            }
+            try {
+                advance(download);
+            } catch (IOException e) {
+                log.warn("Could not advance digest of task {}: {}", download.taskId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Computes the file digest once every segment is complete and compares it with the
+     * expected one. Runs on the last worker, before a PARTS merge.
+     */
+    Verification verify(ActiveDownload download) throws IOException {
+        DownloadTask task = download.task;
+        List<Segment> ordered = download.scheduler.segments();
+        String actual;
+        if (task.getChecksumAlgorithm() == ChecksumAlgorithm.CRC32C) {
+            int crc = 0;
+            for (Segment segment : ordered) {
+                synchronized (segment.checksum) {
+                    crc = Crc32c.combine(crc, segment.checksum.value(), segment.checksum.length());
+                }
+            }
+            actual = Crc32c.toHex(crc);
+        } else {
+            PrefixDigest digest = download.prefixDigest;
+            synchronized (digest) {
+                advance(download);
+                actual = HexFormat.of().formatHex(digest.digest.digest());
+            }
+        }
+        if (actual.equalsIgnoreCase(task.getExpectedChecksum().trim())) {
+            return new Verification(actual, true, List.of());
+        }
+
+        List<Integer> corrupt = new ArrayList<>();
+        for (Segment segment : ordered) {
+            long length = segment.end + 1 - segment.start;
+            int received;
+            synchronized (segment.checksum) {
+                received = segment.checksum.value();
+            }
+            if (crcFromDisk(task, segment.index, segment.start, length) != received) {
+                corrupt.add(segment.index);
+            }
+        }
+        return new Verification(actual, false, corrupt);
+    }
+
+    /** Hashes the finished bytes past the frontier, segment by segment in offset order. */
+    private void advance(ActiveDownload download) throws IOException {
+        PrefixDigest digest = download.prefixDigest;
+        synchronized (digest) {
+            ByteBuffer buffer = null;
+            for (Segment segment : download.scheduler.segments()) {
+                long segmentEnd = segment.end + 1;
+                if (digest.frontier >= segmentEnd) {
+                    continue;
+                }
+                long available = segment.start + Math.min(segment.done.get(), segmentEnd - segment.start);
+                if (digest.frontier < available) {
+                    if (buffer == null) {
+                        buffer = ByteBuffer.allocate(READ_CHUNK);
+                    }
+                    try (FileChannel channel = openForRead(download.task, segment.index)) {
+                        long base = writeMode == WriteMode.DIRECT ? 0 : segment.start;
+                        while (digest.frontier < available) {
+                            buffer.clear().limit((int) Math.min(READ_CHUNK, available - digest.frontier));
+                            int read = channel.read(buffer, digest.frontier - base);
+                            if (read <= 0) {
+                                throw new IOException("Unexpected end of file at offset " + digest.frontier);
+                            }
+                            buffer.flip();
+                            digest.digest.update(buffer);
+                            digest.frontier += read;
+                        }
+                    }
+                }
+                if (available < segmentEnd) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private int crcFromDisk(DownloadTask task, int index, long start, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_CHUNK, Math.max(1, length)));
+        try (FileChannel channel = openForRead(task, index)) {
+            long position = writeMode == WriteMode.DIRECT ? start : 0;
+            long left = length;
+            while (left > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), left));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                buffer.flip();
+                crc.update(buffer);
+                position += read;
+                left -= read;
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private FileChannel openForRead(DownloadTask task, int segmentIndex) throws IOException {
+        Path target = Paths.get(task.getFilePath());
+        Path path = writeMode == WriteMode.DIRECT
+                ? target
+                : DownloadFiles.partPath(target.getParent().resolve("temp"), task.getFileName(), segmentIndex);
+        if (!Files.exists(path)) {
+            throw new IOException("Missing file " + path);
+        }
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadTask;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sources of one task: its URL first, then the mirrors accepted at submission, all serving the
+ * same bytes. Every attempt at a segment picks its source here. Mirrors nobody has measured
+ * yet are tried first, least loaded first, so the first segments spread across all of them;
+ * after that a source is drawn with a weight equal to its measured throughput per connection,
+ * so fast mirrors take most of the work while slow ones still contribute. A mirror that falls
+ * behind keeps only the front of its segments: the {@link SegmentScheduler} hands their tails
+ * to idle workers, which pick a faster source for them. Hosts whose circuit is open are
+ * skipped.
+ */
+final class Mirrors {
+    /** Separator of {@link DownloadTask#getMirrorUrls()}. */
+    static final String SEPARATOR = "\n";
+
+    /** One source and its last measured throughput per connection. */
+    static final class Mirror {
+        final URI uri;
+        final String host;
+        /** Bytes per second of one connection; 0 until measured. */
+        volatile double rate;
+        volatile boolean measured;
+
+        Mirror(URI uri) {
+            this.uri = uri;
+            this.host = DownloadEngine.hostOf(uri.toString());
+        }
+
+        /**
+         * A failed attempt halves the weight, so the retry likely goes elsewhere; a mirror that
+         * fails before it was ever measured is no longer tried first.
+         */
+        void penalize() {
+            rate = rate / 2;
+            measured = true;
+        }
+    }
+
+    private final List<Mirror> sources;
+
+    private Mirrors(List<Mirror> sources) {
+        this.sources = sources;
+    }
+
+    static Mirrors of(URI uri, DownloadTask task) {
+        List<Mirror> sources = new ArrayList<>();
+        sources.add(new Mirror(uri));
+        for (String url : urls(task)) {
+            sources.add(new Mirror(URI.create(url)));
+        }
+        return new Mirrors(List.copyOf(sources));
+    }
+
+    /** The mirror URLs of {@code task}, without its own URL. */
+    static List<String> urls(DownloadTask task) {
+        String urls = task.getMirrorUrls();
+        if (urls == null || urls.isBlank()) {
+            return List.of();
+        }
+        return List.of(urls.split(SEPARATOR)).stream()
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+    }
+
+    /**
+     * Source for the next attempt. Live rates come from the segments currently assigned to
+     * each source; a source with none keeps its last measurement.
+     */
+    Mirror choose(SegmentScheduler scheduler, HostCircuitBreaker circuitBreaker) {
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        int count = sources.size();
+        double[] live = new double[count];
+        int[] sampled = new int[count];
+        int[] load = new int[count];
+        for (Segment segment : scheduler.segments()) {
+            // A segment just taken from the scheduler has no source until this call returns
+            if (!segment.assigned || segment.isComplete() || segment.source == null) {
+                continue;
+            }
+            int i = sources.indexOf(segment.source);
+            if (i < 0) {
+                continue;
+            }
+            load[i]++;
+            double rate = segment.throughput.rate();
+            if (rate > 0) {
+                live[i] += rate;
+                sampled[i]++;
+            }
+        }
+
+        Mirror untried = null;
+        int untriedLoad = Integer.MAX_VALUE;
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            Mirror mirror = sources.get(i);
+            if (sampled[i] > 0) {
+                mirror.rate = live[i] / sampled[i];
+                mirror.measured = true;
+            }
+            if (circuitBreaker.isOpen(mirror.host)) {
+                continue;
+            }
+            if (!mirror.measured) {
+                if (load[i] < untriedLoad) {
+                    untried = mirror;
+                    untriedLoad = load[i];
+                }
+            } else {
+                total += weight(mirror);
+            }
+        }
+        if (untried != null) {
+            return untried;
+        }
+        if (total == 0) {
+            return sources.get(0);
+        }
+        double pick = ThreadLocalRandom.current().nextDouble(total);
+        Mirror chosen = null;
+        for (Mirror mirror : sources) {
+            if (!mirror.measured || circuitBreaker.isOpen(mirror.host)) {
+                continue;
+            }
+            chosen = mirror;
+            pick -= weight(mirror);
+            if (pick < 0) {
+                break;
+            }
+        }
+        return chosen != null ? chosen : sources.get(0);
+    }
+
+    // A stalled mirror keeps a token weight, so it is retried now and then
+    private static double weight(Mirror mirror) {
+        return Math.max(mirror.rate, 1.0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.projet.task;
+
+import com.example.projet.repository.DownloadTaskRepository;
+import com.example.projet.repository.DownloadTaskRepositoryCustom.ProgressUpdate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory progress of every running task. Workers only bump counters. A sampler feeds the
+ * rate estimators every {@code download.progress.sample-interval-ms}, and one flusher writes the
+ * tasks that moved since the last flush to {@code download_task} in a single JDBC batch every
+ * {@code download.progress.flush-interval-ms}. Readers get live values for running tasks
+ * without touching the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProgressRegistry {
+    /** Samples in each sliding rate window: 5 s at the default sample interval. */
+    static final int WINDOW_SAMPLES = 10;
+
+    private final DownloadTaskRepository repository;
+    private final DownloadMetrics downloadMetrics;
+    private final Map<Long, TaskProgress> tasks = new ConcurrentHashMap<>();
+
+    TaskProgress register(ActiveDownload download, long downloadedBytes) {
+        TaskProgress progress = new TaskProgress(download, downloadedBytes);
+        tasks.put(download.taskId, progress);
+        return progress;
+    }
+
+    /** Live progress of a running task, or {@code null} if the database row is authoritative. */
+    public TaskProgress get(Long taskId) {
+        return tasks.get(taskId);
+    }
+
+    /** Live progress of every running task. */
+    public Collection<TaskProgress> active() {
+        return tasks.values();
+    }
+
+    /**
+     * Stops tracking a task. Waits for an in-flight flush, so no batch can overwrite the final
+     * values the caller writes afterwards.
+     */
+    synchronized void unregister(Long taskId) {
+        tasks.remove(taskId);
+    }
+
+    @Scheduled(fixedRateString = "${download.progress.sample-interval-ms:500}")
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        for (TaskProgress progress : tasks.values()) {
+            progress.sample(now);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${download.progress.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<ProgressUpdate> updates = new ArrayList<>();
+        for (TaskProgress progress : tasks.values()) {
+            if (progress.takeDirty()) {
+                updates.add(new ProgressUpdate(progress.getTaskId(), progress.getDownloadedBytes(),
+                        progress.getDownloadSpeed()));
+            }
+        }
+        long began = System.nanoTime();
+        try {
+            repository.updateProgress(updates);
+            downloadMetrics.progressFlush.record(System.nanoTime() - began, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            log.warn("Could not flush download progress: {}", e.getMessage());
+        }
+    }
+}
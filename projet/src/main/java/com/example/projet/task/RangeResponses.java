@@ -0,0 +1,102 @@
+package com.example.projet.task;
+
+import org.apache.hc.core5.http.ConnectionClosedException;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Range request checks shared by the transfer engines.
+ */
+final class RangeResponses {
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private RangeResponses() {
+    }
+
+    /**
+     * The Range header for the rest of {@code segment}, or {@code null} when the request must go
+     * without one: the origin ignores ranges, or the whole open-ended stream is wanted.
+     */
+    static String rangeHeader(ActiveDownload download, Segment segment, long requestedEnd) {
+        long from = segment.position();
+        if (!download.ranged || (from == 0 && requestedEnd == Segment.OPEN_END)) {
+            return null;
+        }
+        return requestedEnd == Segment.OPEN_END ? "bytes=" + from + "-" : "bytes=" + from + "-" + requestedEnd;
+    }
+
+    /**
+     * Accepts a 206 whose Content-Range starts at the requested position and stays within the
+     * requested end, or a plain 200 only when the segment starts at the first byte. A total
+     * length or Content-Length other than the task's means the resource changed. A 429 or 503
+     * is also counted on the task, as a back-off signal for the {@link ConnectionController}.
+     * Rejections are {@link ProtocolException}s, so they are told apart from network errors.
+     */
+    static void checkStatus(ActiveDownload download, HttpResponse response, Segment segment,
+                            long requestedEnd) throws IOException {
+        int responseCode = response.getCode();
+        if (responseCode == HttpStatus.SC_TOO_MANY_REQUESTS || responseCode == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+            download.throttled.incrementAndGet();
+        }
+        long fileSize = download.task.getFileSize();
+        if (responseCode == HttpStatus.SC_PARTIAL_CONTENT) {
+            Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+            Matcher range = header != null ? CONTENT_RANGE.matcher(header.getValue().trim()) : null;
+            if (range == null || !range.matches()) {
+                throw new ProtocolException("Missing or malformed Content-Range for range at offset "
+                        + segment.position() + (header != null ? ": " + header.getValue() : ""));
+            }
+            long first = Long.parseLong(range.group(1));
+            long last = Long.parseLong(range.group(2));
+            if (first != segment.position() || last < first || last > requestedEnd) {
+                throw new ProtocolException("Content-Range " + header.getValue()
+                        + " does not match the requested bytes " + segment.position() + "-"
+                        + (requestedEnd == Segment.OPEN_END ? "" : requestedEnd));
+            }
+            if (fileSize >= 0 && !"*".equals(range.group(3)) && Long.parseLong(range.group(3)) != fileSize) {
+                throw new ProtocolException("Resource changed: Content-Range " + header.getValue()
+                        + " but the download is " + fileSize + " bytes");
+            }
+            return;
+        }
+        if (responseCode == HttpStatus.SC_OK && segment.position() == 0) {
+            Header length = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+            if (fileSize >= 0 && length != null && !length.getValue().trim().equals(Long.toString(fileSize))) {
+                throw new ProtocolException("Resource changed: Content-Length " + length.getValue()
+                        + " but the download is " + fileSize + " bytes");
+            }
+            return;
+        }
+        if (responseCode == HttpStatus.SC_OK) {
+            throw new ProtocolException("Range ignored by the server: full body returned for offset "
+                    + segment.position());
+        }
+        throw new ProtocolException("Unexpected response code " + responseCode + " for range at offset "
+                + segment.position());
+    }
+
+    /**
+     * Fails an attempt whose body ended before the range did. An open-ended stream is complete
+     * when its body ends: its end is set to the last byte received.
+     */
+    static void checkComplete(ActiveDownload download, Segment segment) throws IOException {
+        if (download.isStopped()) {
+            return;
+        }
+        if (segment.end == Segment.OPEN_END) {
+            segment.end = segment.position() - 1;
+            return;
+        }
+        if (!segment.isComplete()) {
+            throw new ConnectionClosedException("Connection closed before end of range at offset "
+                    + segment.position());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.projet.task;
+
+/**
+ * Throughput of one byte counter, fed by a single sampling thread. Samples go into a fixed ring
+ * buffer; each sample computes the rate over the whole window (oldest to newest sample) and
+ * folds it into an exponentially weighted moving average. Readers only load volatile fields,
+ * so reading never locks or allocates.
+ */
+final class RateEstimator {
+    private static final double ALPHA = 0.3;
+
+    private final long[] sampleNanos;
+    private final long[] sampleBytes;
+    private int newest = -1;
+    private int count;
+
+    private long firstNanos;
+    private long firstBytes;
+
+    private volatile double rate;
+    private volatile double peakRate;
+    private volatile double averageRate;
+
+    /** @param windowSamples number of samples the sliding window spans */
+    RateEstimator(int windowSamples) {
+        this.sampleNanos = new long[Math.max(2, windowSamples)];
+        this.sampleBytes = new long[sampleNanos.length];
+    }
+
+    /** Records the counter value at {@code nowNanos}. Called from one thread only. */
+    void sample(long nowNanos, long totalBytes) {
+        if (count == 0) {
+            firstNanos = nowNanos;
+            firstBytes = totalBytes;
+        }
+        newest = (newest + 1) % sampleNanos.length;
+        sampleNanos[newest] = nowNanos;
+        sampleBytes[newest] = totalBytes;
+        if (count < sampleNanos.length) {
+            count++;
+        }
+        if (count < 2) {
+            return;
+        }
+
+        int oldest = count < sampleNanos.length ? 0 : (newest + 1) % sampleNanos.length;
+        long elapsed = nowNanos - sampleNanos[oldest];
+        if (elapsed <= 0) {
+            return;
+        }
+        double windowRate = (totalBytes - sampleBytes[oldest]) * 1_000_000_000.0 / elapsed;
+        double smoothed = count == 2 ? windowRate : ALPHA * windowRate + (1 - ALPHA) * rate;
+        rate = smoothed;
+        peakRate = Math.max(peakRate, windowRate);
+        averageRate = (totalBytes - firstBytes) * 1_000_000_000.0 / (nowNanos - firstNanos);
+    }
+
+    /** Smoothed bytes per second over the sliding window. */
+    double rate() {
+        return rate;
+    }
+
+    /** Highest window rate seen so far. */
+    double peakRate() {
+        return peakRate;
+    }
+
+    /** Bytes per second since the first sample. */
+    double averageRate() {
+        return averageRate;
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadSegment;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.repository.DownloadSegmentRepository;
+import com.example.projet.repository.DownloadTaskRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-flight downloads: a request for a URL that is already QUEUED or DOWNLOADING gets a task
+ * of its own, but that task follows the running one (its leader) instead of starting a second
+ * transfer of the same bytes. Followers report the leader's progress and status, and when the
+ * leader completes its file is hardlinked (or copied) to each follower's path.
+ * <p>
+ * Pausing or resuming any of them acts on the shared transfer. Cancelling a follower only
+ * detaches it. Cancelling the leader while followers remain hands the transfer over: it is
+ * stopped at a checkpoint, its segments and file move to the first follower, which becomes the
+ * leader of the others and continues from where the transfer was.
+ */
+@Component
+@Slf4j
+public class RequestCoalescer {
+    private static final EnumSet<DownloadStatus> IN_FLIGHT = EnumSet.of(DownloadStatus.QUEUED, DownloadStatus.DOWNLOADING);
+    /** Follower statuses that still wait for the leader's transfer. */
+    private static final EnumSet<DownloadStatus> WAITING =
+            EnumSet.of(DownloadStatus.QUEUED, DownloadStatus.DOWNLOADING, DownloadStatus.PAUSED, DownloadStatus.FAILED);
+
+    private final DownloadTaskRepository repository;
+    private final DownloadSegmentRepository segmentRepository;
+    private final DownloadEngine downloadEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WriteMode writeMode;
+
+    // Changed under the lock, read without it
+    private final Object lock = new Object();
+    private final Map<Long, Long> leaders = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> followers = new ConcurrentHashMap<>();
+    private final Set<Long> handOvers = ConcurrentHashMap.newKeySet();
+
+    // The engine runs the executor, which reports back here: resolved on first use
+    public RequestCoalescer(DownloadTaskRepository repository, DownloadSegmentRepository segmentRepository,
+                            @Lazy DownloadEngine downloadEngine, ApplicationEventPublisher eventPublisher,
+                            @Value("${download.write-mode:DIRECT}") WriteMode writeMode) {
+        this.repository = repository;
+        this.segmentRepository = segmentRepository;
+        this.downloadEngine = downloadEngine;
+        this.eventPublisher = eventPublisher;
+        this.writeMode = writeMode;
+    }
+
+    /**
+     * Rebuilds the follower map before recovery requeues anything. A follower whose leader is
+     * gone becomes a task of its own again.
+     */
+    @PostConstruct
+    void load() {
+        for (DownloadTask follower : repository.findByCoalescedIntoIsNotNullAndStatusIn(WAITING)) {
+            boolean leaderAlive = repository.findById(follower.getCoalescedInto())
+                    .map(leader -> leader.getStatus() != DownloadStatus.CANCELLED && leader.getStatus() != DownloadStatus.COMPLETED)
+                    .orElse(false);
+            if (leaderAlive) {
+                link(follower.getId(), follower.getCoalescedInto());
+            } else {
+                follower.setCoalescedInto(null);
+                follower.setDownloadedBytes(0);
+                repository.save(follower);
+            }
+        }
+    }
+
+    /**
+     * Attaches a new, unsaved task to the transfer already in flight for its URL, if there is
+     * one with a compatible expected checksum, and saves it.
+     *
+     * @return the saved follower, or {@code null} when the task needs its own transfer
+     */
+    public DownloadTask attach(DownloadTask task) {
+        DownloadTask leader = repository.findFirstByUrlAndCoalescedIntoIsNullAndStatusInOrderById(task.getUrl(), IN_FLIGHT)
+                .orElse(null);
+        if (leader == null || (task.getExpectedChecksum() != null
+                && !task.getExpectedChecksum().equals(leader.getExpectedChecksum()))) {
+            return null;
+        }
+        synchronized (lock) {
+            // Re-read under the lock: a leader completing now must either see this follower or be skipped
+            leader = repository.findById(leader.getId()).orElse(null);
+            if (leader == null || !IN_FLIGHT.contains(leader.getStatus()) || handOvers.contains(leader.getId())) {
+                return null;
+            }
+            task.setCoalescedInto(leader.getId());
+            task.setFileSize(leader.getFileSize());
+            task.setDownloadedBytes(leader.getDownloadedBytes());
+            task.setStatus(leader.getStatus());
+            task.setEtag(leader.getEtag());
+            task.setLastModified(leader.getLastModified());
+            DownloadTask saved = repository.save(task);
+            link(saved.getId(), leader.getId());
+            log.info("Task {} shares the transfer of task {} for {}", saved.getId(), leader.getId(), task.getUrl());
+            return saved;
+        }
+    }
+
+    /** The leader whose transfer {@code taskId} follows, or {@code null}. */
+    public Long leaderOf(Long taskId) {
+        return leaders.get(taskId);
+    }
+
+    /** Followers currently waiting for {@code leaderId}. */
+    public Set<Long> followersOf(Long leaderId) {
+        Set<Long> ids = followers.get(leaderId);
+        return ids != null ? Set.copyOf(ids) : Set.of();
+    }
+
+    /** Stops a cancelled follower from waiting; the transfer goes on for the others. */
+    public void detach(Long followerId) {
+        synchronized (lock) {
+            unlink(followerId);
+        }
+    }
+
+    /**
+     * Called when the leader itself is cancelled. If followers remain, a hand-over is recorded
+     * and the caller must stop the transfer with a pause (or call {@link #handOver} directly
+     * when nothing is running), instead of cancelling it.
+     *
+     * @return whether the transfer is handed over rather than cancelled
+     */
+    public boolean requestHandOver(Long leaderId) {
+        synchronized (lock) {
+            if (followersOf(leaderId).isEmpty()) {
+                return false;
+            }
+            handOvers.add(leaderId);
+            return true;
+        }
+    }
+
+    /**
+     * Completes a pending hand-over once the leader's transfer has stopped: its segments and file
+     * move to the first follower (one with an expected checksum first), which leads the others
+     * and is queued again unless the transfer was paused. The old leader ends CANCELLED.
+     *
+     * @return {@code false} if no hand-over was pending for this task
+     */
+    public boolean handOver(Long leaderId) {
+        DownloadTask successor;
+        DownloadStatus leaderStatus;
+        synchronized (lock) {
+            if (!handOvers.remove(leaderId)) {
+                return false;
+            }
+            DownloadTask leader = repository.findById(leaderId).orElse(null);
+            if (leader == null) {
+                return true;
+            }
+            leaderStatus = leader.getStatus();
+            List<DownloadTask> waiting = waitingFollowers(leaderId);
+            try {
+                if (waiting.isEmpty()) {
+                    // Every follower left in the meantime: a plain cancel
+                    discard(leader);
+                    successor = null;
+                } else {
+                    waiting.sort(Comparator.comparing((DownloadTask t) -> t.getExpectedChecksum() == null)
+                            .thenComparing(DownloadTask::getId));
+                    successor = waiting.get(0);
+                    transfer(leader, successor);
+                    for (DownloadTask follower : waiting.subList(1, waiting.size())) {
+                        follower.setCoalescedInto(successor.getId());
+                        repository.save(follower);
+                        link(follower.getId(), successor.getId());
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Could not hand over the transfer of task {}: {}", leaderId, e.getMessage());
+                for (DownloadTask follower : waiting) {
+                    unlink(follower.getId());
+                    follower.setCoalescedInto(null);
+                    follower.setStatus(DownloadStatus.FAILED);
+                    repository.save(follower);
+                    eventPublisher.publishEvent(new DownloadStatusChanged(follower.getId()));
+                }
+                successor = null;
+            }
+            leader.setStatus(DownloadStatus.CANCELLED);
+            repository.save(leader);
+            eventPublisher.publishEvent(new DownloadStatusChanged(leaderId));
+        }
+        if (successor != null) {
+            eventPublisher.publishEvent(new DownloadStatusChanged(successor.getId()));
+            if (successor.getStatus() == DownloadStatus.QUEUED) {
+                downloadEngine.submit(successor);
+            }
+            log.info("Transfer of cancelled task {} handed over to task {} ({})", leaderId, successor.getId(), leaderStatus);
+        }
+        return true;
+    }
+
+    /** Copies the leader's status and progress to its followers; completion is {@link #complete}'s job. */
+    public void mirror(DownloadTask leader) {
+        if (leader.getStatus() == DownloadStatus.COMPLETED || leader.getStatus() == DownloadStatus.CANCELLED
+                || followersOf(leader.getId()).isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            for (DownloadTask follower : waitingFollowers(leader.getId())) {
+                follower.setStatus(leader.getStatus());
+                follower.setDownloadedBytes(leader.getDownloadedBytes());
+                repository.save(follower);
+                eventPublisher.publishEvent(new DownloadStatusChanged(follower.getId()));
+            }
+        }
+    }
+
+    /**
+     * Gives every follower of a completed leader its own link to the file and completes it. The
+     * verification result is shared with followers that expected the same checksum.
+     */
+    void complete(Long leaderId) {
+        handOvers.remove(leaderId);
+        if (followersOf(leaderId).isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            DownloadTask leader = repository.findById(leaderId).orElse(null);
+            if (leader == null) {
+                return;
+            }
+            List<DownloadTask> waiting = waitingFollowers(leaderId);
+            for (DownloadTask follower : waiting) {
+                unlink(follower.getId());
+                try {
+                    Path source = Paths.get(leader.getFilePath());
+                    Path target = Paths.get(follower.getFilePath());
+                    if (!target.equals(source)) {
+                        DownloadFiles.linkOrCopy(source, target);
+                    }
+                    follower.setStatus(DownloadStatus.COMPLETED);
+                    follower.setDownloadedBytes(leader.getFileSize());
+                    follower.setCompletedAt(LocalDateTime.now());
+                    if (follower.getExpectedChecksum() != null
+                            && follower.getExpectedChecksum().equals(leader.getExpectedChecksum())) {
+                        follower.setActualChecksum(leader.getActualChecksum());
+                        follower.setChecksumVerified(leader.getChecksumVerified());
+                    }
+                } catch (IOException e) {
+                    log.error("Could not deliver task {} to follower {}: {}", leaderId, follower.getId(), e.getMessage());
+                    follower.setStatus(DownloadStatus.FAILED);
+                    follower.setCoalescedInto(null);
+                }
+                follower.setDownloadSpeed(0);
+                repository.save(follower);
+                eventPublisher.publishEvent(new DownloadStatusChanged(follower.getId()));
+            }
+            followers.remove(leaderId);
+            if (!waiting.isEmpty()) {
+                log.info("Task {} delivered to {} coalesced requests", leaderId, waiting.size());
+            }
+        }
+    }
+
+    // Called under the lock
+    private List<DownloadTask> waitingFollowers(Long leaderId) {
+        List<DownloadTask> waiting = new ArrayList<>();
+        for (Long id : followersOf(leaderId)) {
+            repository.findById(id)
+                    .filter(t -> WAITING.contains(t.getStatus()) && Objects.equals(t.getCoalescedInto(), leaderId))
+                    .ifPresentOrElse(waiting::add, () -> unlink(id));
+        }
+        return waiting;
+    }
+
+    /** Moves the leader's checkpoints and bytes to its successor, which then owns the transfer. */
+    private void transfer(DownloadTask leader, DownloadTask successor) throws IOException {
+        Path source = Paths.get(leader.getFilePath());
+        Path target = Paths.get(successor.getFilePath());
+        List<DownloadSegment> segments = segmentRepository.findByTaskIdOrderBySegmentIndex(leader.getId());
+        if (writeMode == WriteMode.DIRECT) {
+            if (Files.exists(source) && !source.equals(target)) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } else {
+            Path tempDir = source.getParent().resolve("temp");
+            for (DownloadSegment segment : segments) {
+                Path part = DownloadFiles.partPath(tempDir, leader.getFileName(), segment.getSegmentIndex());
+                if (Files.exists(part)) {
+                    Files.move(part, DownloadFiles.partPath(tempDir, successor.getFileName(), segment.getSegmentIndex()),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        segments.forEach(segment -> segment.setTaskId(successor.getId()));
+        segmentRepository.saveAll(segments);
+
+        unlink(successor.getId());
+        successor.setCoalescedInto(null);
+        successor.setDownloadedBytes(leader.getDownloadedBytes());
+        successor.setStatus(leader.getStatus() == DownloadStatus.PAUSED ? DownloadStatus.PAUSED : DownloadStatus.QUEUED);
+        repository.save(successor);
+    }
+
+    /** Removes what a cancelled transfer left behind, as the executor does for a cancel. */
+    private void discard(DownloadTask leader) throws IOException {
+        Path target = Paths.get(leader.getFilePath());
+        Files.deleteIfExists(target);
+        if (writeMode == WriteMode.PARTS) {
+            for (DownloadSegment segment : segmentRepository.findByTaskIdOrderBySegmentIndex(leader.getId())) {
+                Files.deleteIfExists(DownloadFiles.partPath(target.getParent().resolve("temp"),
+                        leader.getFileName(), segment.getSegmentIndex()));
+            }
+        }
+        segmentRepository.deleteByTaskId(leader.getId());
+    }
+
+    private void link(Long followerId, Long leaderId) {
+        leaders.put(followerId, leaderId);
+        followers.computeIfAbsent(leaderId, id -> ConcurrentHashMap.newKeySet()).add(followerId);
+    }
+
+    private void unlink(Long followerId) {
+        Long leaderId = leaders.remove(followerId);
+        if (leaderId != null) {
+            followers.computeIfPresent(leaderId, (id, ids) -> {
+                ids.remove(followerId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadSegment;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory state of one byte range being downloaded. Workers bump {@link #done} after each
+ * write; the coordinator copies it into the persisted {@link DownloadSegment} at checkpoints.
+ * {@link #end} only ever shrinks, when the {@link SegmentScheduler} hands the tail of the range
+ * to an idle worker; the owning worker re-reads it before every write.
+ */
+final class Segment {
+    /** End of a range whose length is only known once the stream ends. */
+    static final long OPEN_END = Long.MAX_VALUE - 1;
+
+    final DownloadSegment entity;
+    final int index;
+    final long start;
+    volatile long end;
+    final AtomicLong done;
+    /** Running CRC32C of the received bytes, or {@code null} when the task is not verified. */
+    final SegmentChecksum checksum;
+    final RateEstimator throughput = new RateEstimator(ProgressRegistry.WINDOW_SAMPLES);
+    /** Source of the current attempt, chosen by the worker before it starts; null until then. */
+    volatile Mirrors.Mirror source;
+
+    // Written by the owning SegmentScheduler; assigned is also read for progress reports
+    volatile boolean assigned;
+    long assignedAtNanos;
+    long doneAtAssign;
+    /** Not handed out again before this time, after a failed attempt; 0 when due. */
+    long retryAtNanos;
+    /** Failed attempts in a row without a byte received; written by the worker holding it. */
+    int failures;
+
+    Segment(DownloadSegment entity, SegmentChecksum checksum) {
+        this.entity = entity;
+        this.checksum = checksum;
+        this.index = entity.getSegmentIndex();
+        this.start = entity.getStartOffset();
+        this.end = entity.getEndOffset();
+        this.done = new AtomicLong(entity.getDownloadedBytes());
+    }
+
+    /**
+     * Records the {@code length} bytes just written from {@code buffer}, the ones right before its
+     * position, as written at the current position: they are added to the checksum first, then to
+     * {@link #done}. The checksum reads them in place, leaving {@code buffer} at the same position
+     * with its limit there, as a completed write leaves it anyway.
+     */
+    void advance(ByteBuffer buffer, int length) {
+        if (checksum == null) {
+            done.addAndGet(length);
+            return;
+        }
+        synchronized (checksum) {
+            int written = buffer.position();
+            checksum.update(buffer.limit(written).position(written - length));
+            done.addAndGet(length);
+        }
+    }
+
+    /**
+     * Forgets every byte received so far; used when the origin cannot resume a stream and it
+     * has to start over from the first byte.
+     */
+    void restart() {
+        if (checksum == null) {
+            done.set(0);
+            return;
+        }
+        synchronized (checksum) {
+            checksum.reset();
+            done.set(0);
+        }
+    }
+
+    /** Absolute offset of the next byte to fetch. */
+    long position() {
+        return start + done.get();
+    }
+
+    long remaining() {
+        return Math.max(0, end + 1 - position());
+    }
+
+    boolean isComplete() {
+        return remaining() == 0;
+    }
+
+    /** Bytes per second since the segment was handed to its current worker. */
+    double rate(long nowNanos) {
+        long elapsed = nowNanos - assignedAtNanos;
+        return elapsed <= 0 ? 0 : (done.get() - doneAtAssign) * 1_000_000_000.0 / elapsed;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.projet.task;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Running CRC32C of the bytes a segment has received, fed by its worker right after each write.
+ * A resumed segment starts from its checkpointed value, extended with the bytes of this run.
+ * Readers and the writer synchronize on the instance so a checkpoint always pairs a byte count
+ * with the checksum of exactly those bytes.
+ */
+final class SegmentChecksum {
+    private int prefixCrc;
+    private long prefixLength;
+    private final CRC32C running = new CRC32C();
+    private long runningLength;
+
+    SegmentChecksum() {
+        this(0, 0);
+    }
+
+    SegmentChecksum(int prefixCrc, long prefixLength) {
+        this.prefixCrc = prefixCrc;
+        this.prefixLength = prefixLength;
+    }
+
+    /** Adds the remaining bytes of {@code data}, consuming them. */
+    void update(ByteBuffer data) {
+        runningLength += data.remaining();
+        running.update(data);
+    }
+
+    /** Back to zero bytes, for a stream that starts over from its first byte. */
+    void reset() {
+        prefixCrc = 0;
+        prefixLength = 0;
+        running.reset();
+        runningLength = 0;
+    }
+
+    long length() {
+        return prefixLength + runningLength;
+    }
+
+    int value() {
+        return Crc32c.combine(prefixCrc, (int) running.getValue(), runningLength);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadSegment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hands segments of one task to its workers. Unassigned segments go first; once they are
+ * exhausted an idle worker steals the back half of the segment with the longest expected time
+ * to finish (remaining bytes over its current rate), so one slow connection no longer holds
+ * the whole task back. Segments smaller than {@code 2 * minSplitSize} are never split.
+ * <p>
+ * A segment whose attempt failed is {@link #backOff backed off}: it waits in the queue, without
+ * a worker, until its retry time, and is neither handed out nor counted as work before then.
+ */
+final class SegmentScheduler {
+    private final Long taskId;
+    private final long minSplitSize;
+    private final List<Segment> segments;
+    private final Deque<Segment> pending = new ArrayDeque<>();
+    private int nextIndex;
+
+    SegmentScheduler(Long taskId, List<Segment> segments, long minSplitSize) {
+        this.taskId = taskId;
+        this.minSplitSize = Math.max(1, minSplitSize);
+        this.segments = new ArrayList<>(segments);
+        for (Segment segment : segments) {
+            nextIndex = Math.max(nextIndex, segment.index + 1);
+            if (!segment.isComplete()) {
+                pending.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Returns the next segment for an idle worker, splitting a running one if nothing is
+     * pending, or {@code null} when there is no work left worth sharing. A new segment created
+     * by a split has no id yet and must be persisted by the caller.
+     */
+    synchronized Segment next() {
+        long now = System.nanoTime();
+        Iterator<Segment> queue = pending.iterator();
+        while (queue.hasNext()) {
+            Segment segment = queue.next();
+            if (segment.isComplete()) {
+                queue.remove();
+            } else if (isDue(segment, now)) {
+                queue.remove();
+                return assign(segment, now);
+            }
+        }
+
+        Segment victim = segments.stream()
+                .filter(s -> s.assigned && s.remaining() / 2 >= minSplitSize)
+                .max(Comparator.comparingDouble(s -> s.remaining() / Math.max(s.rate(now), 1.0)))
+                .orElse(null);
+        if (victim == null) {
+            return null;
+        }
+
+        long splitAt = victim.position() + victim.remaining() / 2;
+        DownloadSegment entity = new DownloadSegment();
+        entity.setTaskId(taskId);
+        entity.setSegmentIndex(nextIndex++);
+        entity.setStartOffset(splitAt);
+        entity.setEndOffset(victim.end);
+        victim.end = splitAt - 1;
+        victim.entity.setEndOffset(splitAt - 1);
+
+        Segment stolen = new Segment(entity, victim.checksum != null ? new SegmentChecksum() : null);
+        segments.add(stolen);
+        return assign(stolen, now);
+    }
+
+    /** Puts a segment whose worker gave up back in the queue for another worker. */
+    synchronized void release(Segment segment) {
+        segment.assigned = false;
+        segment.retryAtNanos = 0;
+        if (!segment.isComplete()) {
+            pending.addFirst(segment);
+        }
+    }
+
+    /**
+     * Puts a segment whose attempt failed back in the queue, to be handed out again no sooner
+     * than {@code delayNanos} from now. It resumes from its current position.
+     */
+    synchronized void backOff(Segment segment, long delayNanos) {
+        segment.assigned = false;
+        segment.retryAtNanos = System.nanoTime() + Math.max(0, delayNanos);
+        if (!segment.isComplete()) {
+            pending.addLast(segment);
+        }
+    }
+
+    /**
+     * Nanoseconds until the first backed-off segment is due (0 if one already is), or -1 when
+     * no segment is waiting for a retry.
+     */
+    synchronized long retryDelayNanos() {
+        long now = System.nanoTime();
+        long delay = -1;
+        for (Segment segment : pending) {
+            if (!segment.isComplete() && segment.retryAtNanos != 0) {
+                long wait = Math.max(0, segment.retryAtNanos - now);
+                delay = delay < 0 ? wait : Math.min(delay, wait);
+            }
+        }
+        return delay;
+    }
+
+    /** Snapshot of all segments, in start-offset order. */
+    synchronized List<Segment> segments() {
+        List<Segment> snapshot = new ArrayList<>(segments);
+        snapshot.sort(Comparator.comparingLong(s -> s.start));
+        return snapshot;
+    }
+
+    /** Whether {@link #next()} would currently return a segment. */
+    synchronized boolean hasWork() {
+        long now = System.nanoTime();
+        return pending.stream().anyMatch(s -> !s.isComplete() && isDue(s, now))
+                || segments.stream().anyMatch(s -> s.assigned && s.remaining() / 2 >= minSplitSize);
+    }
+
+    synchronized boolean isComplete() {
+        return segments.stream().allMatch(Segment::isComplete);
+    }
+
+    private static boolean isDue(Segment segment, long now) {
+        return segment.retryAtNanos == 0 || now - segment.retryAtNanos >= 0;
+    }
+
+    private Segment assign(Segment segment, long now) {
+        segment.assigned = true;
+        segment.assignedAtNanos = now;
+        segment.doneAtAssign = segment.done.get();
+        return segment;
+    }
+}
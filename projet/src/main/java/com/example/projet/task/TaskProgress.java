@@ -0,0 +1,142 @@
+package com.example.projet.task;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live progress of one running task. Every transfer adds to a {@link LongAdder}, so workers
+ * on the same task never contend on a single counter. Rates of the task and of each of its
+ * segments come from {@link RateEstimator}s fed by the {@link ProgressRegistry} sampler.
+ */
+public final class TaskProgress {
+    private final ActiveDownload download;
+    private final LongAdder downloaded = new LongAdder();
+    private final RateEstimator throughput = new RateEstimator(ProgressRegistry.WINDOW_SAMPLES);
+
+    // Only touched by the flusher
+    private long flushedBytes;
+    private double flushedSpeed;
+
+    TaskProgress(ActiveDownload download, long downloadedBytes) {
+        this.download = download;
+        this.downloaded.add(downloadedBytes);
+        this.flushedBytes = downloadedBytes;
+    }
+
+    void add(long bytes) {
+        downloaded.add(bytes);
+    }
+
+    ActiveDownload download() {
+        return download;
+    }
+
+    public Long getTaskId() {
+        return download.taskId;
+    }
+
+    public long getFileSize() {
+        return download.task.getFileSize();
+    }
+
+    public long getDownloadedBytes() {
+        return downloaded.sum();
+    }
+
+    /** Smoothed bytes per second over the sliding window. */
+    public double getDownloadSpeed() {
+        return throughput.rate();
+    }
+
+    /** Bytes per second since this run of the task started. */
+    public double getAverageSpeed() {
+        return throughput.averageRate();
+    }
+
+    public double getPeakSpeed() {
+        return throughput.peakRate();
+    }
+
+    /** Seconds left at the current speed, or {@code null} while the speed or the size is unknown. */
+    public Long getEtaSeconds() {
+        double speed = throughput.rate();
+        if (speed <= 0 || download.task.getFileSize() < 0) {
+            return null;
+        }
+        long remaining = Math.max(0, download.task.getFileSize() - downloaded.sum());
+        return (long) Math.ceil(remaining / speed);
+    }
+
+    public int getActiveConnections() {
+        return download.connections;
+    }
+
+    public boolean isAdaptiveConnections() {
+        return download.adaptive;
+    }
+
+    public int getConnectionLimit() {
+        return download.maxConnections;
+    }
+
+    /** Recent decisions of the adaptive connection controller, oldest first. */
+    public List<ConnectionChange> getConnectionHistory() {
+        synchronized (download.connectionHistory) {
+            return List.copyOf(download.connectionHistory);
+        }
+    }
+
+    /** Per-segment breakdown in start-offset order. */
+    public List<SegmentProgress> getSegments() {
+        SegmentScheduler scheduler = download.scheduler;
+        if (scheduler == null) {
+            return List.of();
+        }
+        List<Segment> segments = scheduler.segments();
+        List<SegmentProgress> result = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            long end = segment.end;
+            Mirrors.Mirror source = segment.source;
+            result.add(new SegmentProgress(segment.index, segment.start, end,
+                    Math.min(segment.done.get(), end + 1 - segment.start),
+                    segment.throughput.rate(), segment.assigned && !segment.isComplete(),
+                    source != null ? source.host : null));
+        }
+        return result;
+    }
+
+    /** Feeds the task and segment estimators. Called by the sampler thread only. */
+    void sample(long nowNanos) {
+        throughput.sample(nowNanos, downloaded.sum());
+        SegmentScheduler scheduler = download.scheduler;
+        if (scheduler != null) {
+            for (Segment segment : scheduler.segments()) {
+                segment.throughput.sample(nowNanos, segment.done.get());
+            }
+        }
+    }
+
+    /** Whether the row changed since the previous flush; remembers the values written. */
+    boolean takeDirty() {
+        long bytes = downloaded.sum();
+        double speed = throughput.rate();
+        boolean dirty = bytes != flushedBytes || speed != flushedSpeed;
+        flushedBytes = bytes;
+        flushedSpeed = speed;
+        return dirty;
+    }
+
+    /** One change of the connection limit and why it was made. */
+    public record ConnectionChange(Instant at, int from, int to, double speed, String reason) {
+    }
+
+    /**
+     * Progress of one segment, i.e. of one connection while it is active. {@code source} is the
+     * host of its latest attempt, which differs from the task's host on a mirror.
+     */
+    public record SegmentProgress(int index, long startOffset, long endOffset, long downloadedBytes,
+                                  double speed, boolean active, String source) {
+    }
+}
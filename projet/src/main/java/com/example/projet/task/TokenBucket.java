@@ -0,0 +1,59 @@
+package com.example.projet.task;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket kept as the theoretical time the next byte may be sent (GCRA). A
+ * reservation is one CAS and returns how long the caller has to wait, so callers sleep
+ * outside of any lock. Idle time builds up at most {@link #BURST_NANOS} worth of credit,
+ * which keeps pacing smooth without letting an idle bucket release a large burst.
+ */
+final class TokenBucket {
+    static final long BURST_NANOS = 50_000_000L;
+
+    private volatile long bytesPerSecond;
+    private final AtomicLong nextFreeNanos = new AtomicLong(System.nanoTime());
+
+    /** @param bytesPerSecond 0 for unlimited */
+    void setRate(long bytesPerSecond) {
+        setRate(bytesPerSecond, System.nanoTime());
+    }
+
+    /**
+     * Bytes already reserved but not yet due stay owed: the wait left for them is rescaled to
+     * the new rate, so a rate change (every rebalance does one) neither forgives nor inflates
+     * that debt. Idle credit needs no care, {@link #reserve} caps it at the burst anyway.
+     */
+    void setRate(long bytesPerSecond, long nowNanos) {
+        long rate = Math.max(0, bytesPerSecond);
+        long previous = this.bytesPerSecond;
+        if (previous == rate) {
+            return;
+        }
+        if (previous > 0 && rate > 0) {
+            double scale = (double) previous / rate;
+            nextFreeNanos.updateAndGet(next -> next <= nowNanos ? next : nowNanos + (long) ((next - nowNanos) * scale));
+        }
+        this.bytesPerSecond = rate;
+    }
+
+    long getRate() {
+        return bytesPerSecond;
+    }
+
+    /** Takes {@code bytes} from the bucket and returns the nanoseconds to wait before using them. */
+    long reserve(long bytes, long nowNanos) {
+        long rate = bytesPerSecond;
+        if (rate <= 0) {
+            return 0;
+        }
+        long cost = bytes * 1_000_000_000L / rate;
+        while (true) {
+            long next = nextFreeNanos.get();
+            long reserved = Math.max(next, nowNanos - BURST_NANOS) + cost;
+            if (nextFreeNanos.compareAndSet(next, reserved)) {
+                return Math.max(0, reserved - nowNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.projet.task;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * One range request for a segment: fetches {@code bytes=<position>-<end>} and writes the body
+ * into {@code channel} at {@code channelOffset + done}. Retries and slot handling stay in
+ * {@link DownloadTaskExecutor}. Selected per deployment with {@code download.transfer-engine}.
+ */
+interface TransferEngine {
+
+    /**
+     * Streams the remaining bytes of {@code segment} into {@code channel}. Returns once the
+     * segment is complete, its end shrank below what was written, or the task was stopped;
+     * throws if the response is unusable or ends before the range does.
+     */
+    void transfer(ActiveDownload download, FileChannel channel, long channelOffset, Segment segment)
+            throws IOException;
+}
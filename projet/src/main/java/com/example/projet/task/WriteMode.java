@@ -0,0 +1,11 @@
+package com.example.projet.task;
+
+/**
+ * How range workers put their bytes on disk.
+ */
+public enum WriteMode {
+    /** Every range is written at its absolute offset into the preallocated target file. */
+    DIRECT,
+    /** Every range is written to its own temp/&lt;name&gt;.partN file, merged at the end. */
+    PARTS
+}
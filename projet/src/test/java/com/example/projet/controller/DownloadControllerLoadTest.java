@@ -0,0 +1,172 @@
+package com.example.projet.controller;
+
+import com.example.projet.dto.DownloadProgressDTO;
+import com.example.projet.dto.DownloadRequestDTO;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.support.TestOriginServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * End-to-end load through the REST API: {@code loadtest.e2e.downloads} (default 300) downloads
+ * are submitted concurrently to {@code POST /api/downloads} against a loopback
+ * {@link TestOriginServer}, followed through {@code GET /api/downloads/{id}} and compared byte
+ * for byte with the origin. Reports throughput, p50/p99 completion latency (creation to
+ * completion), peak thread count and peak heap for each origin profile. A profile fails
+ * when its downloads are not all finished within {@code loadtest.e2e.timeout-seconds}
+ * (default 600). Opt-in with {@code -Ddownload.loadtest=true}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "file.storage.location=target/e2e-downloads",
+        "download.cache.enabled=false",
+        "download.connections.max-total=512",
+        "download.connections.max-per-host=512"
+})
+@EnabledIfSystemProperty(named = "download.loadtest", matches = "true")
+@Slf4j
+class DownloadControllerLoadTest {
+    private static final int DOWNLOADS = Integer.getInteger("loadtest.e2e.downloads", 300);
+    private static final int SIZE = 1024 * 1024;
+    private static final int SUBMITTERS = 32;
+    private static final long TIMEOUT_SECONDS = Long.getLong("loadtest.e2e.timeout-seconds", 600);
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Test
+    void throttledConnections() throws Exception {
+        try (TestOriginServer origin = TestOriginServer.start(SIZE)) {
+            origin.throttle(1, 2 * 1024 * 1024).latency(20);
+            run("throttled", origin, 4);
+        }
+    }
+
+    @Test
+    void faultyOrigin() throws Exception {
+        try (TestOriginServer origin = TestOriginServer.start(SIZE)) {
+            origin.latency(20).errors(0.02).resets(0.02).wrongLength(0.01);
+            run("faulty", origin, 4);
+        }
+    }
+
+    @Test
+    void originWithoutRanges() throws Exception {
+        try (TestOriginServer origin = TestOriginServer.start(SIZE)) {
+            origin.rangeSupport(false).latency(20).resets(0.01);
+            run("no-ranges", origin, 4);
+        }
+    }
+
+    private void run(String profile, TestOriginServer origin, int threads) throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        threadBean.resetPeakThreadCount();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long began = System.nanoTime();
+        List<DownloadTask> tasks = submit(profile, origin, threads);
+
+        EnumSet<DownloadStatus> finished = EnumSet.of(
+                DownloadStatus.COMPLETED, DownloadStatus.FAILED, DownloadStatus.CANCELLED);
+        Map<Long, DownloadProgressDTO> results = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (results.size() < tasks.size() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(100);
+            for (DownloadTask task : tasks) {
+                if (results.containsKey(task.getId())) {
+                    continue;
+                }
+                DownloadProgressDTO progress = rest.getForObject("/api/downloads/{id}",
+                        DownloadProgressDTO.class, task.getId());
+                if (finished.contains(progress.getStatus())) {
+                    results.put(task.getId(), progress);
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+
+        long[] latencies = results.values().stream()
+                .filter(p -> p.getCompletedAt() != null)
+                .mapToLong(p -> Duration.between(p.getCreatedAt(), p.getCompletedAt()).toMillis())
+                .sorted()
+                .toArray();
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        log.info("{}: {} downloads x {} connections in {} s, {} MB/s, latency p50 {} ms p99 {} ms, "
+                        + "{} requests, {} faults, peak threads {}, peak heap {} MB",
+                profile, tasks.size(), threads, String.format("%.1f", seconds),
+                String.format("%.1f", (double) tasks.size() * SIZE / seconds / (1024 * 1024)),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), origin.getRequests(), origin.getFaults(),
+                threadBean.getPeakThreadCount(), peakHeap / (1024 * 1024));
+
+        assertEquals(tasks.size(), results.size(),
+                "downloads still running after " + TIMEOUT_SECONDS + " s (loadtest.e2e.timeout-seconds)");
+        for (DownloadTask task : tasks) {
+            DownloadProgressDTO result = results.get(task.getId());
+            assertEquals(DownloadStatus.COMPLETED, result.getStatus(), task.getFileName());
+            assertArrayEquals(origin.content(), Files.readAllBytes(Paths.get(task.getFilePath())), task.getFileName());
+        }
+    }
+
+    /** Submits every download from {@code SUBMITTERS} client threads at once. */
+    private List<DownloadTask> submit(String profile, TestOriginServer origin, int threads) throws Exception {
+        ExecutorService submitters = Executors.newFixedThreadPool(SUBMITTERS);
+        try {
+            List<Future<DownloadTask>> pending = new ArrayList<>(DOWNLOADS);
+            for (int i = 0; i < DOWNLOADS; i++) {
+                // Distinct URLs, so the downloads are not coalesced into one transfer
+                String name = "e2e-" + profile + "-" + i + ".bin";
+                DownloadRequestDTO request = new DownloadRequestDTO(origin.url(name), name, threads);
+                pending.add(submitters.submit(() -> {
+                    ResponseEntity<DownloadTask> response =
+                            rest.postForEntity("/api/downloads", request, DownloadTask.class);
+                    assertEquals(HttpStatus.OK, response.getStatusCode(), name);
+                    return response.getBody();
+                }));
+            }
+            List<DownloadTask> tasks = new ArrayList<>(DOWNLOADS);
+            for (Future<DownloadTask> task : pending) {
+                tasks.add(task.get());
+            }
+            return tasks;
+        } finally {
+            submitters.shutdown();
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
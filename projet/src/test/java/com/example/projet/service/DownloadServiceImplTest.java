@@ -0,0 +1,63 @@
+package com.example.projet.service;
+
+import com.example.projet.dto.DownloadRequestDTO;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.repository.DownloadTaskRepository;
+import com.example.projet.support.TestOriginServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "file.storage.location=target/service-downloads",
+        "download.cache.enabled=false"
+})
+class DownloadServiceImplTest {
+    private static final int SIZE = 256 * 1024;
+
+    @Autowired
+    private DownloadService downloadService;
+
+    @Autowired
+    private DownloadTaskRepository repository;
+
+    @Test
+    void coalescedDownloadsKeepTheirSharedFileUntilBothAreDeleted() throws Exception {
+        try (TestOriginServer origin = TestOriginServer.start(SIZE)) {
+            // Slow enough for the second request to find the first one still in flight
+            origin.throttle(1, SIZE);
+            DownloadRequestDTO request = new DownloadRequestDTO(origin.url("shared.bin"), "shared.bin", 1);
+            DownloadTask leader = downloadService.startDownload(request);
+            DownloadTask follower = downloadService.startDownload(request);
+            assertEquals(leader.getId(), follower.getCoalescedInto());
+            assertEquals(leader.getFilePath(), follower.getFilePath());
+
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (!repository.findAllById(List.of(leader.getId(), follower.getId())).stream()
+                    .allMatch(t -> t.getStatus() == DownloadStatus.COMPLETED)) {
+                assertTrue(System.nanoTime() - deadline < 0, "downloads did not complete");
+                Thread.sleep(100);
+            }
+            Path file = Paths.get(leader.getFilePath());
+
+            downloadService.deleteDownload(leader.getId());
+            assertArrayEquals(origin.content(), Files.readAllBytes(file));
+            assertNotNull(downloadService.getDownloadProgress(follower.getId()));
+
+            downloadService.deleteDownload(follower.getId());
+            assertFalse(Files.exists(file));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.projet.service;
+
+import com.example.projet.support.TestOriginServer;
+import com.example.projet.task.DownloadMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrlProberTest {
+    private static final int SIZE = 512 * 1024;
+
+    /**
+     * One pooled connection and a short lease timeout: a probe that drops a body without giving
+     * its connection back makes the next one fail.
+     */
+    private static CloseableHttpClient singleConnectionClient() {
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(1)
+                        .setMaxConnPerRoute(1)
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofSeconds(5))
+                        .build())
+                .build();
+    }
+
+    private static UrlProber prober(CloseableHttpClient httpClient) {
+        return new UrlProber(httpClient, new DownloadMetrics(new SimpleMeterRegistry(), 50));
+    }
+
+    @Test
+    void originIgnoringRangesIsProbedWithoutReadingTheBody() throws IOException {
+        try (TestOriginServer origin = TestOriginServer.start(SIZE).rangeSupport(false);
+             CloseableHttpClient httpClient = singleConnectionClient()) {
+            UrlProber prober = prober(httpClient);
+            URI uri = URI.create(origin.url("no-ranges.bin"));
+
+            for (int i = 0; i < 2; i++) {
+                UrlProber.Probe probe = prober.probe(uri);
+                assertEquals(200, probe.status());
+                assertEquals(SIZE, probe.contentLength());
+                assertEquals(Boolean.FALSE, probe.ranges());
+            }
+        }
+    }
+
+    @Test
+    void changedCopyIsRevalidatedWithoutReadingTheBody() throws IOException {
+        try (TestOriginServer origin = TestOriginServer.start(SIZE);
+             CloseableHttpClient httpClient = singleConnectionClient()) {
+            UrlProber prober = prober(httpClient);
+            URI uri = URI.create(origin.url("changed.bin"));
+
+            // The origin ignores validators, so every revalidation is a 200 with the whole file
+            for (int i = 0; i < 2; i++) {
+                UrlProber.Probe probe = prober.revalidate(uri, "\"stale\"", null);
+                assertEquals(200, probe.status());
+                assertEquals(SIZE, probe.contentLength());
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.projet.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Loopback HTTP origin serving a generated payload with Range support. Every
+ * {@code throttleEvery}-th GET is limited to {@code throttledBytesPerSecond}, which is how
+ * tests model one slow mirror connection among fast ones; {@code throttle(1, rate)} limits
+ * every connection.
+ * <p>
+ * Faults are injected into GETs only, so HEAD probes stay reliable: 429/503 answers, bodies
+ * reset partway through, and responses one byte shorter than the range or file asked for, with
+ * headers that match the short body. A fixed latency applies to every request. Range support
+ * can be switched off, in which case every GET gets the whole file with a 200. Faults are drawn
+ * from a seeded {@link Random}, so a run can be repeated.
+ */
+public final class TestOriginServer implements AutoCloseable {
+    private static final int WRITE_CHUNK = 16 * 1024;
+
+    private final HttpServer server;
+    // Virtual threads, so the origin does not show up in the engine's platform thread count
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final byte[] content;
+    private final AtomicInteger getRequests = new AtomicInteger();
+    private final AtomicInteger faults = new AtomicInteger();
+    private final Random random = new Random(42);
+    private volatile int throttleEvery;
+    private volatile long throttledBytesPerSecond;
+    private volatile boolean rangeSupport = true;
+    private volatile long latencyNanos;
+    private volatile double errorRate;
+    private volatile int[] errorStatuses = {429, 503};
+    private volatile double resetRate;
+    private volatile double wrongLengthRate;
+
+    private TestOriginServer(byte[] content) throws IOException {
+        this.content = content;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/files/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static TestOriginServer start(int size) throws IOException {
+        return new TestOriginServer(generate(size));
+    }
+
+    /** Deterministic payload, so a misplaced range shows up as a byte mismatch. */
+    public static byte[] generate(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31 + (i >>> 11));
+        }
+        return bytes;
+    }
+
+    public TestOriginServer throttle(int every, long bytesPerSecond) {
+        this.throttleEvery = every;
+        this.throttledBytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /** Without range support, Range headers are ignored and Accept-Ranges is not sent. */
+    public TestOriginServer rangeSupport(boolean supported) {
+        this.rangeSupport = supported;
+        return this;
+    }
+
+    /** Delay before the response headers of every request. */
+    public TestOriginServer latency(long millis) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        return this;
+    }
+
+    /** Share of GETs answered with one of {@code statuses} (429 and 503 by default) and no body. */
+    public TestOriginServer errors(double rate, int... statuses) {
+        this.errorRate = rate;
+        if (statuses.length > 0) {
+            this.errorStatuses = statuses.clone();
+        }
+        return this;
+    }
+
+    /** Share of GET bodies cut off at a random point, with the connection closed. */
+    public TestOriginServer resets(double rate) {
+        this.resetRate = rate;
+        return this;
+    }
+
+    /** Share of GETs answered one byte short, with a Content-Length and Content-Range to match. */
+    public TestOriginServer wrongLength(double rate) {
+        this.wrongLengthRate = rate;
+        return this;
+    }
+
+    /** Restarts the fault sequence. */
+    public TestOriginServer seed(long seed) {
+        random.setSeed(seed);
+        return this;
+    }
+
+    public String url(String fileName) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/files/" + fileName;
+    }
+
+    public byte[] content() {
+        return content;
+    }
+
+    public int getRequests() {
+        return getRequests.get();
+    }
+
+    /** Faults injected so far, of every kind. */
+    public int getFaults() {
+        return faults.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+            if (rangeSupport) {
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            }
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                // Some JDKs' HttpServer drops the connection after a HEAD; saying so keeps
+                // clients from reusing it and failing the next request with no response
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.getResponseHeaders().set("Content-Length", Long.toString(content.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            int request = getRequests.incrementAndGet();
+            if (chance(errorRate)) {
+                faults.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(errorStatuses[random.nextInt(errorStatuses.length)], -1);
+                return;
+            }
+
+            long start = 0;
+            long end = content.length - 1;
+            int status = 200;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (rangeSupport && range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring(6).split("-", 2);
+                start = Long.parseLong(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    end = Math.min(end, Long.parseLong(bounds[1]));
+                }
+                status = 206;
+            }
+            if (end > start && chance(wrongLengthRate)) {
+                faults.incrementAndGet();
+                end--;
+            }
+            if (status == 206) {
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + start + "-" + end + "/" + content.length);
+            }
+
+            long rate = throttleEvery > 0 && request % throttleEvery == 1 % throttleEvery ? throttledBytesPerSecond : 0;
+            long length = end - start + 1;
+            long sent = length;
+            if (chance(resetRate)) {
+                faults.incrementAndGet();
+                sent = (long) (random.nextDouble() * length);
+            }
+            exchange.sendResponseHeaders(status, length);
+            write(exchange.getResponseBody(), (int) start, (int) sent, rate);
+        } catch (IOException e) {
+            // Client dropped the connection (segment split or pause), or the body was cut off
+            // on purpose: closing the exchange short of its length drops the connection
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean chance(double rate) {
+        return rate > 0 && random.nextDouble() < rate;
+    }
+
+    private void write(OutputStream out, int offset, int length, long bytesPerSecond) throws IOException {
+        long began = System.nanoTime();
+        int sent = 0;
+        while (sent < length) {
+            int chunk = Math.min(WRITE_CHUNK, length - sent);
+            out.write(content, offset + sent, chunk);
+            sent += chunk;
+            if (bytesPerSecond > 0) {
+                long due = began + sent * 1_000_000_000L / bytesPerSecond;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.projet.task;
+
+import com.example.projet.dto.DownloadRequestDTO;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.repository.DownloadTaskRepository;
+import com.example.projet.service.DownloadService;
+import com.example.projet.support.TestOriginServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Starts {@code loadtest.downloads} (default 5,000) small downloads against a loopback origin
+ * and reports wall time, throughput, peak platform thread count and peak RSS for the execution
+ * mode configured by the subclass. Opt-in with {@code -Ddownload.loadtest=true}.
+ */
+@Slf4j
+abstract class AbstractExecutionModeLoadTest {
+    private static final int DOWNLOADS = Integer.getInteger("loadtest.downloads", 5000);
+    private static final int SIZE = 64 * 1024;
+
+    @Autowired
+    private DownloadService downloadService;
+
+    @Autowired
+    private DownloadTaskRepository repository;
+
+    @Value("${download.execution-mode}")
+    private String executionMode;
+
+    @Test
+    void concurrentSmallDownloads() throws Exception {
+        try (TestOriginServer origin = TestOriginServer.start(SIZE)) {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+            long peakRss = residentSetSize();
+
+            long began = System.nanoTime();
+            List<Long> ids = new ArrayList<>(DOWNLOADS);
+            for (int i = 0; i < DOWNLOADS; i++) {
+                DownloadTask task = downloadService.startDownload(new DownloadRequestDTO(
+                        origin.url("small-" + i + ".bin"), "load-" + executionMode + "-" + i + ".bin", 1));
+                ids.add(task.getId());
+            }
+
+            EnumSet<DownloadStatus> finished = EnumSet.of(
+                    DownloadStatus.COMPLETED, DownloadStatus.FAILED, DownloadStatus.CANCELLED);
+            Map<DownloadStatus, Long> statuses;
+            do {
+                Thread.sleep(100);
+                peakRss = Math.max(peakRss, residentSetSize());
+                statuses = repository.findAllById(ids).stream()
+                        .collect(Collectors.groupingBy(DownloadTask::getStatus, Collectors.counting()));
+            } while (statuses.entrySet().stream()
+                    .filter(e -> !finished.contains(e.getKey()))
+                    .mapToLong(Map.Entry::getValue).sum() > 0);
+            double seconds = (System.nanoTime() - began) / 1e9;
+
+            log.info("{}: {} downloads in {} s, {} MB/s, peak platform threads {}, peak RSS {} MB",
+                    executionMode, DOWNLOADS, String.format("%.1f", seconds),
+                    String.format("%.1f", (double) DOWNLOADS * SIZE / seconds / (1024 * 1024)),
+                    threads.getPeakThreadCount(), peakRss / (1024 * 1024));
+
+            assertEquals(DOWNLOADS, statuses.getOrDefault(DownloadStatus.COMPLETED, 0L));
+        }
+    }
+
+    /** Resident set size from /proc, or 0 where it is not available. */
+    private static long residentSetSize() {
+        Path status = Paths.get("/proc/self/status");
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.projet.task;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostCircuitBreakerTest {
+
+    private static final String HOST = "origin.example";
+
+    @Test
+    void opensAfterThresholdAndOnlyForThatHost() {
+        HostCircuitBreaker breaker = new HostCircuitBreaker(new SimpleMeterRegistry(), 3, 60_000);
+        breaker.onFailure(HOST);
+        breaker.onFailure(HOST);
+        assertTrue(breaker.tryAcquire(HOST));
+
+        breaker.onFailure(HOST);
+        assertTrue(breaker.isOpen(HOST));
+        assertFalse(breaker.tryAcquire(HOST));
+        assertTrue(breaker.remainingNanos(HOST) > 0);
+        assertFalse(breaker.isOpen("other.example"));
+        assertEquals(0, breaker.remainingNanos("other.example"));
+    }
+
+    @Test
+    void successInBetweenResetsTheCount() {
+        HostCircuitBreaker breaker = new HostCircuitBreaker(new SimpleMeterRegistry(), 3, 60_000);
+        breaker.onFailure(HOST);
+        breaker.onFailure(HOST);
+        breaker.onSuccess(HOST);
+        breaker.onFailure(HOST);
+        breaker.onFailure(HOST);
+        assertFalse(breaker.isOpen(HOST));
+    }
+
+    @Test
+    void halfOpenLetsOneTrialThrough() throws InterruptedException {
+        HostCircuitBreaker breaker = new HostCircuitBreaker(new SimpleMeterRegistry(), 1, 200);
+        breaker.onFailure(HOST);
+        assertTrue(breaker.isOpen(HOST));
+        Thread.sleep(250);
+
+        assertFalse(breaker.isOpen(HOST));
+        assertTrue(breaker.tryAcquire(HOST));
+        assertFalse(breaker.tryAcquire(HOST), "a second trial while the first is in flight");
+
+        breaker.onFailure(HOST);
+        assertTrue(breaker.isOpen(HOST), "a failed trial reopens the circuit");
+
+        Thread.sleep(250);
+        assertTrue(breaker.tryAcquire(HOST));
+        breaker.onSuccess(HOST);
+        assertTrue(breaker.tryAcquire(HOST));
+        assertTrue(breaker.tryAcquire(HOST));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadSegment;
+import com.example.projet.model.DownloadTask;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MirrorsTest {
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    @Test
+    void untriedMirrorsShareTheFirstSegments() {
+        Mirrors mirrors = mirrors("http://b.example/f.bin", "http://c.example/f.bin");
+        SegmentScheduler scheduler = scheduler(3);
+        HostCircuitBreaker breaker = breaker();
+
+        Set<String> hosts = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            Segment segment = scheduler.next();
+            segment.source = mirrors.choose(scheduler, breaker);
+            hosts.add(segment.source.host);
+        }
+        assertEquals(Set.of("a.example", "b.example", "c.example"), hosts);
+    }
+
+    @Test
+    void measuredMirrorsAreWeightedByThroughput() {
+        Mirrors mirrors = mirrors("http://b.example/f.bin");
+        SegmentScheduler scheduler = scheduler(2);
+        HostCircuitBreaker breaker = breaker();
+
+        Segment fast = scheduler.next();
+        fast.source = mirrors.choose(scheduler, breaker);
+        Segment slow = scheduler.next();
+        slow.source = mirrors.choose(scheduler, breaker);
+        transfer(fast, 9_000_000);
+        transfer(slow, 1_000_000);
+
+        int onFast = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (mirrors.choose(scheduler, breaker) == fast.source) {
+                onFast++;
+            }
+        }
+        assertTrue(onFast > 8_500 && onFast < 9_500, onFast + " of 10000 attempts on the 90% mirror");
+
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure(fast.source.host);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertSame(slow.source, mirrors.choose(scheduler, breaker));
+        }
+    }
+
+    private static Mirrors mirrors(String... urls) {
+        DownloadTask task = new DownloadTask();
+        task.setUrl("http://a.example/f.bin");
+        task.setMirrorUrls(String.join(Mirrors.SEPARATOR, urls));
+        return Mirrors.of(URI.create(task.getUrl()), task);
+    }
+
+    private static SegmentScheduler scheduler(int count) {
+        List<Segment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DownloadSegment entity = new DownloadSegment();
+            entity.setSegmentIndex(i);
+            entity.setStartOffset(i * SEGMENT_SIZE);
+            entity.setEndOffset((i + 1) * SEGMENT_SIZE - 1);
+            segments.add(new Segment(entity, null));
+        }
+        return new SegmentScheduler(1L, segments, SEGMENT_SIZE);
+    }
+
+    private static HostCircuitBreaker breaker() {
+        return new HostCircuitBreaker(new SimpleMeterRegistry(), 5, 60_000);
+    }
+
+    /** Feeds the segment's estimator one second at {@code bytesPerSecond}. */
+    private static void transfer(Segment segment, long bytesPerSecond) {
+        long now = System.nanoTime();
+        segment.throughput.sample(now, 0);
+        segment.done.addAndGet(bytesPerSecond);
+        segment.throughput.sample(now + 1_000_000_000L, bytesPerSecond);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.projet.task;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = {
+        "file.storage.location=target/load-downloads",
+        "download.execution-mode=PLATFORM",
+        "download.connections.max-total=256",
+        "download.connections.max-per-host=256"
+})
+@EnabledIfSystemProperty(named = "download.loadtest", matches = "true")
+class PlatformThreadLoadTest extends AbstractExecutionModeLoadTest {
+}
@@ -0,0 +1,77 @@
+package com.example.projet.task;
+
+import com.example.projet.model.DownloadSegment;
+import com.example.projet.model.DownloadTask;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RangeResponsesTest {
+
+    private static ActiveDownload download(long fileSize, Boolean rangeSupported) {
+        DownloadTask task = new DownloadTask();
+        task.setId(1L);
+        task.setFileSize(fileSize);
+        task.setNumberOfThreads(4);
+        task.setRangeSupported(rangeSupported);
+        return new ActiveDownload(task, "origin");
+    }
+
+    private static Segment segment(long start, long end, long done) {
+        DownloadSegment entity = new DownloadSegment();
+        entity.setStartOffset(start);
+        entity.setEndOffset(end);
+        entity.setDownloadedBytes(done);
+        return new Segment(entity, null);
+    }
+
+    private static BasicHttpResponse partial(String contentRange) {
+        BasicHttpResponse response = new BasicHttpResponse(206);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange);
+        return response;
+    }
+
+    @Test
+    void partialContentMustMatchTheRequestedRange() {
+        ActiveDownload download = download(1000, true);
+        Segment segment = segment(100, 499, 50);
+
+        assertDoesNotThrow(() -> RangeResponses.checkStatus(download, partial("bytes 150-499/1000"), segment, 499));
+        assertThrows(IOException.class,
+                () -> RangeResponses.checkStatus(download, partial("bytes 0-499/1000"), segment, 499));
+        assertThrows(IOException.class,
+                () -> RangeResponses.checkStatus(download, partial("bytes 150-999/1000"), segment, 499));
+        assertThrows(IOException.class,
+                () -> RangeResponses.checkStatus(download, partial("bytes 150-499/2000"), segment, 499));
+        assertThrows(IOException.class,
+                () -> RangeResponses.checkStatus(download, new BasicHttpResponse(206), segment, 499));
+    }
+
+    @Test
+    void fullBodyIsOnlyAcceptedFromTheFirstByte() {
+        ActiveDownload download = download(1000, true);
+
+        assertDoesNotThrow(() -> RangeResponses.checkStatus(download, new BasicHttpResponse(200), segment(0, 499, 0), 499));
+        assertThrows(IOException.class,
+                () -> RangeResponses.checkStatus(download, new BasicHttpResponse(200), segment(500, 999, 0), 999));
+    }
+
+    @Test
+    void singleStreamSendsNoRangeAndEndsWithItsBody() throws IOException {
+        ActiveDownload download = download(-1, false);
+        Segment segment = segment(0, Segment.OPEN_END, 0);
+
+        assertNull(RangeResponses.rangeHeader(download, segment, segment.end));
+        segment.done.set(4096);
+        RangeResponses.checkComplete(download, segment);
+        assertEquals(4095, segment.end);
+        assertEquals(0, segment.remaining());
+    }
+}
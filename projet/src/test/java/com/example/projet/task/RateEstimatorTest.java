@@ -0,0 +1,39 @@
+package com.example.projet.task;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateEstimatorTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void steadyCounterConvergesToItsRate() {
+        RateEstimator estimator = new RateEstimator(4);
+        for (int i = 0; i <= 20; i++) {
+            estimator.sample(i * SECOND / 2, i * 512L * 1024);
+        }
+        assertEquals(1024 * 1024, estimator.rate(), 1);
+        assertEquals(1024 * 1024, estimator.averageRate(), 1);
+        assertEquals(1024 * 1024, estimator.peakRate(), 1);
+    }
+
+    @Test
+    void stalledCounterDecaysButKeepsPeakAndAverage() {
+        RateEstimator estimator = new RateEstimator(4);
+        long bytes = 0;
+        int i = 0;
+        for (; i <= 8; i++) {
+            bytes = i * 1_000_000L;
+            estimator.sample(i * SECOND, bytes);
+        }
+        for (; i <= 30; i++) {
+            estimator.sample(i * SECOND, bytes);
+        }
+        assertTrue(estimator.rate() < 1_000_000 / 100.0, "rate still " + estimator.rate());
+        assertEquals(1_000_000, estimator.peakRate(), 1);
+        assertEquals(bytes / 30.0, estimator.averageRate(), 1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.projet.task;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SegmentChecksumTest {
+
+    private static int crc(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    @Test
+    void combinedSegmentsGiveTheWholeFileChecksum() {
+        byte[] file = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(file);
+        int[] cuts = {0, 1, 65536, 1024 * 1024, file.length - 3, file.length};
+
+        int combined = 0;
+        for (int i = 0; i + 1 < cuts.length; i++) {
+            int length = cuts[i + 1] - cuts[i];
+            combined = Crc32c.combine(combined, crc(file, cuts[i], length), length);
+        }
+        assertEquals(crc(file, 0, file.length), combined);
+    }
+
+    @Test
+    void resumedSegmentContinuesFromItsCheckpoint() {
+        byte[] segment = new byte[200_000];
+        new Random(7).nextBytes(segment);
+        int checkpoint = 123_457;
+
+        SegmentChecksum resumed = new SegmentChecksum(crc(segment, 0, checkpoint), checkpoint);
+        for (int position = checkpoint; position < segment.length; position += 8192) {
+            resumed.update(ByteBuffer.wrap(segment, position, Math.min(8192, segment.length - position)));
+        }
+
+        assertEquals(segment.length, resumed.length());
+        assertEquals(crc(segment, 0, segment.length), resumed.value());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.projet.task;
+
+import com.example.projet.dto.DownloadProgressDTO;
+import com.example.projet.dto.DownloadRequestDTO;
+import com.example.projet.model.DownloadTask;
+import com.example.projet.model.DownloadTask.DownloadStatus;
+import com.example.projet.service.DownloadService;
+import com.example.projet.support.TestOriginServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Time-to-complete against a loopback origin where one connection in four is throttled.
+ * With the static fileSize/numThreads split the throttled range alone would take
+ * {@code SIZE / THREADS / SLOW_RATE} seconds; work stealing must beat that.
+ */
+@SpringBootTest(properties = {
+        "file.storage.location=target/test-downloads",
+        "download.segment.min-split-size=262144"
+})
+@Slf4j
+class SegmentSchedulerThroughputTest {
+
+    private static final int SIZE = 8 * 1024 * 1024;
+    private static final int THREADS = 4;
+    private static final long SLOW_RATE = 256 * 1024;
+
+    @Autowired
+    private DownloadService downloadService;
+
+    @Test
+    void idleWorkersStealFromThrottledConnection() throws Exception {
+        try (TestOriginServer origin = TestOriginServer.start(SIZE).throttle(THREADS, SLOW_RATE)) {
+            long staticSplitMillis = SIZE / THREADS * 1000L / SLOW_RATE;
+
+            long began = System.nanoTime();
+            DownloadTask task = downloadService.startDownload(
+                    new DownloadRequestDTO(origin.url("throttled.bin"), "throttled.bin", THREADS));
+            DownloadProgressDTO progress = awaitFinished(task.getId(), 4 * staticSplitMillis);
+            long elapsedMillis = (System.nanoTime() - began) / 1_000_000;
+
+            log.info("work stealing: {} ms (static split lower bound {} ms, {} GET requests)",
+                    elapsedMillis, staticSplitMillis, origin.getRequests());
+
+            assertEquals(DownloadStatus.COMPLETED, progress.getStatus());
+            assertArrayEquals(origin.content(), Files.readAllBytes(Paths.get(task.getFilePath())));
+            assertTrue(elapsedMillis < staticSplitMillis,
+                    "took " + elapsedMillis + " ms, static split needs at least " + staticSplitMillis + " ms");
+        }
+    }
+
+    private DownloadProgressDTO awaitFinished(Long taskId, long timeoutMillis) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        DownloadProgressDTO progress = downloadService.getDownloadProgress(taskId);
+        while (progress.getStatus() != DownloadStatus.COMPLETED && progress.getStatus() != DownloadStatus.FAILED
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            progress = downloadService.getDownloadProgress(taskId);
+        }
+        return progress;
+    }
+}
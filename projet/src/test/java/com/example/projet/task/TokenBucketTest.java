@@ -0,0 +1,62 @@
+package com.example.projet.task;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long RATE = 50L * 1024 * 1024;
+    private static final int CHUNK = 8192;
+
+    @Test
+    void pacedReaderGetsTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket();
+        bucket.setRate(RATE);
+        long now = System.nanoTime();
+        long start = now;
+        long bytes = 0;
+        while (bytes < 10 * RATE) {
+            now += bucket.reserve(CHUNK, now);
+            bytes += CHUNK;
+        }
+        double seconds = (now - start) / 1e9;
+        assertEquals(RATE, bytes / seconds, RATE * 0.01);
+    }
+
+    @Test
+    void idleBucketOnlyReleasesItsBurst() {
+        TokenBucket bucket = new TokenBucket();
+        bucket.setRate(RATE);
+        long now = System.nanoTime() + 60_000_000_000L;
+        long free = 0;
+        while (bucket.reserve(CHUNK, now) == 0) {
+            free += CHUNK;
+        }
+        long burst = RATE * TokenBucket.BURST_NANOS / 1_000_000_000L;
+        assertTrue(free <= burst + CHUNK, "released " + free + " bytes after idling, burst is " + burst);
+    }
+
+    @Test
+    void rateChangeKeepsTheDebtOwed() {
+        TokenBucket bucket = new TokenBucket();
+        long now = System.nanoTime();
+        bucket.setRate(RATE, now);
+        long owed = bucket.reserve(RATE, now);
+
+        // The second already reserved now drains at half the rate; only then is the next chunk due
+        bucket.setRate(RATE / 2, now);
+        long expected = 2 * owed + CHUNK * 1_000_000_000L / (RATE / 2);
+        assertEquals(expected, bucket.reserve(CHUNK, now), 1_000);
+    }
+
+    @Test
+    void zeroRateIsUnlimited() {
+        TokenBucket bucket = new TokenBucket();
+        long now = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(0, bucket.reserve(CHUNK, now));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.projet.task;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = {
+        "file.storage.location=target/load-downloads",
+        "download.execution-mode=VIRTUAL",
+        "download.connections.max-total=5000",
+        "download.connections.max-per-host=5000"
+})
+@EnabledIfSystemProperty(named = "download.loadtest", matches = "true")
+class VirtualThreadLoadTest extends AbstractExecutionModeLoadTest {
+}
@@ -0,0 +1,77 @@
+package com.example.projet.task;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Writes the same payload through the file helpers of the PARTS (part files, then a merge) and
+ * DIRECT (ranges in place in a preallocated target) write modes and checks that both produce
+ * it byte for byte. Their speed is measured by {@code WritePathBenchmark} in the benchmarks
+ * module.
+ */
+class WriteModeTest {
+
+    private static final int RANGES = 8;
+    private static final List<Integer> PARTS = IntStream.range(0, RANGES).boxed().toList();
+    private static final int BUFFER_SIZE = 8192;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void partsAndDirectModesProduceTheSameFile() throws IOException {
+        int size = 16 * 1024 * 1024;
+        byte[] payload = new byte[size];
+        new Random(42).nextBytes(payload);
+
+        Path tempDir = Files.createDirectories(dir.resolve("temp"));
+        for (int i = 0; i < RANGES; i++) {
+            long[] range = range(i, size);
+            try (FileChannel part = FileChannel.open(DownloadFiles.partPath(tempDir, "parts.bin", i),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                copy(payload, range, part, 0);
+            }
+        }
+        DownloadFiles.mergeParts(tempDir, dir.resolve("parts.bin").toString(), "parts.bin", PARTS);
+        DownloadFiles.cleanupTempFiles(tempDir, "parts.bin", PARTS);
+
+        try (FileChannel target = DownloadFiles.openTarget(dir.resolve("direct.bin"), size)) {
+            for (int i = 0; i < RANGES; i++) {
+                long[] range = range(i, size);
+                copy(payload, range, target, range[0]);
+            }
+        }
+
+        assertArrayEquals(payload, Files.readAllBytes(dir.resolve("parts.bin")));
+        assertArrayEquals(payload, Files.readAllBytes(dir.resolve("direct.bin")));
+    }
+
+    private static long[] range(int index, int size) {
+        long chunkSize = size / RANGES;
+        long start = index * chunkSize;
+        long end = (index == RANGES - 1) ? size - 1 : start + chunkSize - 1;
+        return new long[]{start, end};
+    }
+
+    private static void copy(byte[] payload, long[] range, FileChannel channel, long basePosition) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long written = 0;
+        for (long offset = range[0]; offset <= range[1]; offset += BUFFER_SIZE) {
+            int length = (int) Math.min(BUFFER_SIZE, range[1] + 1 - offset);
+            buffer.limit((int) offset + length).position((int) offset);
+            written += DownloadFiles.writeFully(channel, buffer, basePosition + written);
+        }
+    }
+}